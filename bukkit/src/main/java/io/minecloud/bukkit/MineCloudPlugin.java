@@ -17,6 +17,7 @@ package io.minecloud.bukkit;
 
 import com.google.common.io.Files;
 import io.minecloud.Cached;
+import io.minecloud.ContentCache;
 import io.minecloud.MineCloud;
 import io.minecloud.db.mongo.MongoDatabase;
 import io.minecloud.db.redis.RedisDatabase;
@@ -24,16 +25,18 @@ import io.minecloud.db.redis.msg.binary.MessageOutputStream;
 import io.minecloud.db.redis.pubsub.SimpleRedisChannel;
 import io.minecloud.models.player.PlayerData;
 import io.minecloud.models.plugins.PluginType;
+import io.minecloud.models.server.LiveState;
 import io.minecloud.models.server.Server;
+import io.minecloud.models.server.ServerRepository;
 import io.minecloud.models.server.World;
 import io.minecloud.models.server.type.ServerType;
 import org.bukkit.Bukkit;
 import org.bukkit.WorldCreator;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.FileUtil;
-import redis.clients.jedis.Jedis;
 
 import java.io.File;
 import java.io.IOException;
@@ -46,9 +49,11 @@ import java.util.logging.Level;
 
 public class MineCloudPlugin extends JavaPlugin {
     private Cached<Server> server;
+    private PresenceBuffer presence;
     private MongoDatabase mongo;
     private RedisDatabase redis;
     private String serverId;
+    private volatile boolean reported;
 
     @Override
     public void onEnable() {
@@ -65,43 +70,69 @@ public class MineCloudPlugin extends JavaPlugin {
             ex.printStackTrace();
         }
 
+        presence = new PresenceBuffer(this);
+
         new BukkitRunnable() {
             @Override
             public void run() {
-                Server server = mongo.repositoryBy(Server.class).findFirst(serverId);
+                ServerRepository repository = mongo.repositoryBy(Server.class);
                 Runtime runtime = Runtime.getRuntime();
+                int ramUsage = (int) ((runtime.totalMemory() - runtime.freeMemory()) / 1048576);
+                double tps = fetchTps();
+
+                // the first report marks the server ready on its document, the rest only go to Redis.
+                // The flags are read fresh so a closed or promoted server is routed accordingly.
+                Boolean joinable = reported || repository.updateStatistics(serverId, ramUsage, tps)
+                        ? repository.joinable(serverId)
+                        : null;
 
-                if (server == null) {
+                if (joinable == null) {
                     getLogger().info("Server removed from db, shutting down");
                     Bukkit.shutdown();
                     return;
                 }
 
-                server.setRamUsage((int) ((runtime.totalMemory() - runtime.freeMemory()) / 1048576));
-                server.setTps(fetchTps());
-                updatePlayers(server);
+                reported = true;
 
-                mongo.repositoryBy(Server.class).save(server);
+                Server server = server();
 
-                //Heartbeat
-                try (Jedis jedis = redis.grabResource()) {
-                    jedis.hset("server:" + server.entityId(), "heartbeat", String.valueOf(System.currentTimeMillis()));
-                }
+                MineCloud.instance().liveStates().report(LiveState.create(serverId, server.network().name(),
+                        server.type().name(), tps, ramUsage, Bukkit.getOnlinePlayers().size(),
+                        server.type().maxPlayers(), joinable));
             }
         }.runTaskTimerAsynchronously(this, 40, 200);
 
+        long flushInterval = flushInterval();
+
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                presence.flush();
+            }
+        }.runTaskTimerAsynchronously(this, flushInterval, flushInterval);
+
+        // correct any drift left by failed flushes, deltas keep the list current in between
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                presence.resync(MineCloudPlugin.this::onlinePlayers);
+            }
+        }.runTaskTimerAsynchronously(this, 200, 1200);
+
         redis.addChannel(SimpleRedisChannel.create("server-start-notif", redis));
         redis.addChannel(SimpleRedisChannel.create("server-shutdown-notif", redis));
+        redis.addChannel(SimpleRedisChannel.create("player-presence", redis));
 
         getServer().getPluginManager().registerEvents(new PlayerTracker(), this);
 
         // start loading plugins and additional worlds
 
         ServerType type = server().type();
+        //The daemon may have laid out worlds and plugins from its template cache already
+        boolean templateReady = "1".equals(System.getenv("TEMPLATE_READY"));
 
         type.worlds().forEach((world) -> {
-            File worldFolder = new File("/mnt/minecloud/worlds/",
-                    world.name() + "/" + world.version());
+            File worldFolder = ContentCache.local().world(world.name(), world.version());
 
             if (validateFolder(worldFolder, world)) {
                 return;
@@ -109,8 +140,10 @@ public class MineCloudPlugin extends JavaPlugin {
 
             File wrld = new File(world.name());
 
-            wrld.mkdirs();
-            copyFolder(worldFolder, wrld);
+            if (!templateReady || !wrld.isDirectory()) {
+                wrld.mkdirs();
+                copyFolder(worldFolder, wrld);
+            }
 
             Bukkit.createWorld(new WorldCreator(world.name()));
         });
@@ -120,8 +153,7 @@ public class MineCloudPlugin extends JavaPlugin {
         type.plugins().forEach((plugin) -> {
             String version = plugin.version();
             PluginType pluginType = plugin.type();
-            File pluginsContainer = new File("/mnt/minecloud/plugins/",
-                    pluginType.name() + "/" + version);
+            File pluginsContainer = ContentCache.local().plugin(pluginType.name(), version);
 
             getLogger().info("Loading " + pluginType.name() + "...");
 
@@ -133,14 +165,16 @@ public class MineCloudPlugin extends JavaPlugin {
                     continue; // ignore directories
                 File pl = new File("nplugins/" + f.getName());
 
-                FileUtil.copy(f, pl);
+                if (!templateReady || !pl.exists()) {
+                    FileUtil.copy(f, pl);
+                }
             }
 
-            File configs = new File("/mnt/minecloud/configs/",
-                    pluginType.name() + "/" + (plugin.config() == null ? version : plugin.config()));
+            File configs = ContentCache.local().config(pluginType.name(),
+                    plugin.config() == null ? version : plugin.config());
             File configContainer = new File("nplugins/" + pluginType.name());
 
-            if (!validateFolder(configs, pluginType, version))
+            if (!validateFolder(configs, pluginType, version) && (!templateReady || !configContainer.isDirectory()))
                 copyFolder(configs, configContainer);
         });
 
@@ -149,7 +183,7 @@ public class MineCloudPlugin extends JavaPlugin {
             Bukkit.getPluginManager().enablePlugin(plugin);
         }
 
-        try (MessageOutputStream os = new MessageOutputStream()) {
+        try (MessageOutputStream os = MessageOutputStream.pooled()) {
             os.writeString(server().entityId());
 
             redis.channelBy("server-start-notif").publish(os.toMessage());
@@ -220,10 +254,15 @@ public class MineCloudPlugin extends JavaPlugin {
 
     @Override
     public void onDisable() {
-        try (Jedis jedis = this.redis.grabResource()) {
-            jedis.hdel("server:" + server().entityId(), "heartbeat");
+        Server server = server();
+
+        if (server != null) {
+            MineCloud.instance().liveStates().remove(serverId, server.network().name(), server.type().name());
         }
 
+        Bukkit.getOnlinePlayers().forEach((player) -> MineCloud.instance().playerRegistry()
+                .playerQuit(player.getUniqueId(), player.getName(), serverId));
+
         mongo.repositoryBy(Server.class).deleteById(serverId);
 
         try (MessageOutputStream os = new MessageOutputStream()) {
@@ -235,22 +274,63 @@ public class MineCloudPlugin extends JavaPlugin {
         }
     }
 
-    public void updatePlayers(Server server) {
+    public List<PlayerData> onlinePlayers() {
         List<PlayerData> onlinePlayers = new ArrayList<>();
 
-        Bukkit.getOnlinePlayers().stream()
-                .forEach((player) -> {
-                    PlayerData data = new PlayerData();
+        Bukkit.getOnlinePlayers().forEach((player) -> onlinePlayers.add(playerData(player)));
+        return onlinePlayers;
+    }
 
-                    data.setHealth(player.getHealth());
-                    data.setMaxHealth(player.getMaxHealth());
-                    data.setName(player.getName());
-                    data.setId(player.getUniqueId().toString());
+    public PlayerData playerData(Player player) {
+        PlayerData data = new PlayerData();
 
-                    onlinePlayers.add(data);
-                });
+        data.setHealth(player.getHealth());
+        data.setMaxHealth(player.getMaxHealth());
+        data.setName(player.getName());
+        data.setId(player.getUniqueId().toString());
 
-        server.setOnlinePlayers(onlinePlayers);
+        return data;
+    }
+
+    /**
+     * The interval between writes of buffered player joins and quits, in ticks. Can be
+     * overridden through the presence_flush_ticks environment variable.
+     */
+    private static long flushInterval() {
+        String interval = System.getenv("presence_flush_ticks");
+
+        if (interval == null) {
+            return 20L;
+        }
+
+        try {
+            return Math.max(1L, Long.parseLong(interval));
+        } catch (NumberFormatException ex) {
+            return 20L;
+        }
+    }
+
+    /**
+     * Lets the controller know how many players joined and quit since the last flush
+     */
+    void publishPresence(int joined, int quit) {
+        Server server = server();
+
+        try (MessageOutputStream os = new MessageOutputStream()) {
+            os.writeString(serverId);
+            os.writeString(server.network().name());
+            os.writeString(server.type().name());
+            os.writeVarInt32(joined);
+            os.writeVarInt32(quit);
+
+            redis.channelBy("player-presence").publish(os.toMessage());
+        } catch (IOException ex) {
+            getLogger().log(Level.WARNING, "Unable to publish player presence", ex);
+        }
+    }
+
+    PresenceBuffer presence() {
+        return presence;
     }
 
     public Server server() {
@@ -261,6 +341,32 @@ public class MineCloudPlugin extends JavaPlugin {
         return server.get();
     }
 
+    /**
+     * Opens or closes this server to joining players, on its document and for routing at once
+     */
+    public void setJoinable(boolean joinable) {
+        ServerRepository repository = mongo.repositoryBy(Server.class);
+
+        if (!repository.setJoinable(serverId, joinable)) {
+            return;
+        }
+
+        // the cached copy may predate a promotion, the document knows if it's still on standby
+        Boolean open = repository.joinable(serverId);
+        Server server = server();
+
+        if (open == null || server == null) {
+            return;
+        }
+
+        server.setJoinable(joinable);
+        MineCloud.instance().liveStates().setJoinable(serverId, server.network().name(), server.type().name(), open);
+    }
+
+    public String serverId() {
+        return serverId;
+    }
+
     public MongoDatabase mongo() {
         return mongo;
     }
@@ -15,7 +15,7 @@
  */
 package io.minecloud.bukkit;
 
-import io.minecloud.models.player.PlayerData;
+import io.minecloud.MineCloud;
 import io.minecloud.models.server.Server;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
@@ -25,8 +25,6 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.util.List;
-
 public class PlayerTracker implements Listener {
     private MineCloudPlugin plugin;
 
@@ -36,33 +34,42 @@ public class PlayerTracker implements Listener {
 
     @EventHandler
     public void playerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+
+        plugin.presence().joined(plugin.playerData(player));
         Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
             Server server = plugin.server();
-            List<PlayerData> onlinePlayers = server.onlinePlayers();
-            Player player = event.getPlayer();
-            PlayerData data = new PlayerData();
 
-            data.setHealth(player.getHealth());
-            data.setMaxHealth(player.getMaxHealth());
-            data.setName(player.getName());
-            data.setId(player.getUniqueId().toString());
+            MineCloud.instance().playerRegistry().playerJoined(player.getUniqueId(), player.getName(),
+                    plugin.serverId());
 
-            onlinePlayers.add(data);
+            if (server == null) {
+                return; // the document is gone, the live state expires with it
+            }
 
-            server.setOnlinePlayers(onlinePlayers);
-            plugin.updatePlayers(server);
-            plugin.mongo().repositoryBy(Server.class).save(server);
+            // takes up the slot the proxy leased to the player
+            MineCloud.instance().liveStates().joined(plugin.serverId(), server.network().name(),
+                    server.type().name(), player.getUniqueId());
         });
     }
 
     @EventHandler
     public void playerQuit(PlayerQuitEvent event) {
+        Player player = event.getPlayer();
+
+        plugin.presence().quit(player.getUniqueId());
         Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
             Server server = plugin.server();
 
-            server.removePlayer(event.getPlayer().getUniqueId());
-            plugin.updatePlayers(server);
-            plugin.mongo().repositoryBy(Server.class).save(server);
+            MineCloud.instance().playerRegistry().playerQuit(player.getUniqueId(), player.getName(),
+                    plugin.serverId());
+
+            if (server == null) {
+                return;
+            }
+
+            MineCloud.instance().liveStates().quit(plugin.serverId(), server.network().name(),
+                    server.type().name());
         });
     }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.bukkit;
+
+import io.minecloud.models.player.PlayerData;
+import io.minecloud.models.server.Server;
+import io.minecloud.models.server.ServerRepository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Collects players joining and quitting so a burst of them is written to the
+ * database as one batch of partial updates per flush, instead of a full server
+ * save for every event.
+ */
+class PresenceBuffer {
+    private final Map<String, PlayerData> joined = new LinkedHashMap<>();
+    private final Set<String> quit = new HashSet<>();
+    // serializes writes so a flush and a resync never interleave
+    private final Object writeLock = new Object();
+    private final MineCloudPlugin plugin;
+
+    PresenceBuffer(MineCloudPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    synchronized void joined(PlayerData data) {
+        joined.put(data.uuid(), data);
+    }
+
+    synchronized void quit(UUID id) {
+        String uuid = id.toString();
+
+        joined.remove(uuid);
+        quit.add(uuid);
+    }
+
+    void flush() {
+        synchronized (writeLock) {
+            List<PlayerData> joinedPlayers;
+            List<String> quitPlayers;
+
+            synchronized (this) {
+                if (joined.isEmpty() && quit.isEmpty()) {
+                    return;
+                }
+
+                joinedPlayers = new ArrayList<>(joined.values());
+                quitPlayers = new ArrayList<>(quit);
+
+                joined.clear();
+                quit.clear();
+            }
+
+            repository().updatePlayers(plugin.serverId(), joinedPlayers, quitPlayers);
+            plugin.publishPresence(joinedPlayers.size(), quitPlayers.size());
+        }
+    }
+
+    /**
+     * Overwrites the stored players with a snapshot taken once no flush is running, so a
+     * flush of changes newer than the snapshot can't land before it. Pending changes are
+     * kept, applying them on top of the snapshot is harmless as every flush pulls before pushing.
+     */
+    void resync(Supplier<List<PlayerData>> snapshot) {
+        synchronized (writeLock) {
+            repository().setPlayers(plugin.serverId(), snapshot.get());
+        }
+    }
+
+    private ServerRepository repository() {
+        return plugin.mongo().repositoryBy(Server.class);
+    }
+}
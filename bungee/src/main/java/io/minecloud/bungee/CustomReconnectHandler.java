@@ -15,20 +15,32 @@
  */
 package io.minecloud.bungee;
 
+import io.minecloud.MineCloud;
 import io.minecloud.bungee.cardinal.ReconnectEvent;
-import io.minecloud.models.server.Server;
-import io.minecloud.models.server.ServerRepository;
+import io.minecloud.models.bungee.Bungee;
+import io.minecloud.models.network.server.ServerNetworkMetadata;
+import io.minecloud.models.server.type.ServerType;
 import net.md_5.bungee.api.AbstractReconnectHandler;
 import net.md_5.bungee.api.ReconnectHandler;
 import net.md_5.bungee.api.chat.TextComponent;
 import net.md_5.bungee.api.config.ServerInfo;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 
 public class CustomReconnectHandler implements ReconnectHandler {
+    private static final long REFRESH_INTERVAL = 5000L;
+    private static final long FIRST_LOAD_TIMEOUT = 1000L;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
     private MineCloudPlugin plugin;
+    private volatile DefaultTypes defaultTypes;
 
     CustomReconnectHandler(MineCloudPlugin plugin) {
         this.plugin = plugin;
@@ -50,18 +62,12 @@ public class CustomReconnectHandler implements ReconnectHandler {
         info = event.getTarget();
         
         if (info == null) {
-            ServerRepository repository = plugin.mongo.repositoryBy(Server.class);
-            List<Server> servers = repository.find(repository.createQuery()
-                    .field("network").equal(plugin.bungee().network())
-                    .field("ramUsage").notEqual(-1))
-                    .asList();
-
-            servers.removeIf((s) -> !s.type().defaultServer());
-
-            Collections.sort(servers, (a, b) -> a.onlinePlayers().size() - b.onlinePlayers().size());
-            
-            if (servers.size() != 0) {
-                info = plugin.getProxy().getServerInfo(servers.get(0).name());    
+            DefaultTypes types = defaultTypes();
+            String name = types.network == null ? null : MineCloud.instance().liveStates()
+                    .reserve(types.network, types.types, proxiedPlayer.getUniqueId());
+
+            if (name != null) {
+                info = plugin.getProxy().getServerInfo(name);
             }
         }
 
@@ -72,6 +78,64 @@ public class CustomReconnectHandler implements ReconnectHandler {
         return info;
     }
 
+    /**
+     * The default server types of the network, reloaded in the background every few seconds
+     * so logins never wait on Mongo. Only the very first login waits, and at most
+     * {@link #FIRST_LOAD_TIMEOUT} ms.
+     */
+    private DefaultTypes defaultTypes() {
+        DefaultTypes current = defaultTypes;
+
+        if (current != null && System.currentTimeMillis() - current.loaded < REFRESH_INTERVAL) {
+            return current;
+        }
+
+        if (refreshing.compareAndSet(false, true)) {
+            CompletableFuture<DefaultTypes> refresh = loadDefaultTypes();
+
+            refresh.whenComplete((loaded, ex) -> {
+                if (ex != null) {
+                    plugin.getLogger().log(Level.WARNING, "Unable to load default server types", ex);
+                } else {
+                    defaultTypes = loaded;
+                }
+
+                refreshing.set(false);
+            });
+
+            if (current == null) {
+                try {
+                    return refresh.get(FIRST_LOAD_TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (Exception ignored) {
+                }
+            }
+        }
+
+        return current == null ? DefaultTypes.EMPTY : current;
+    }
+
+    private CompletableFuture<DefaultTypes> loadDefaultTypes() {
+        // the bungee is looked up on the executor too, its cache may need reloading
+        return plugin.mongo.async(() -> {
+            Bungee bungee = plugin.bungee();
+            List<String> types = new ArrayList<>();
+
+            if (bungee == null) {
+                return DefaultTypes.EMPTY;
+            }
+
+            for (ServerNetworkMetadata metadata : bungee.network().serverMetadata()) {
+                ServerType type = metadata.type();
+
+                if (type != null && type.defaultServer()) {
+                    types.add(type.name());
+                }
+            }
+
+            return new DefaultTypes(bungee.network().name(), types);
+        });
+    }
+
     @Override
     public void setServer(ProxiedPlayer proxiedPlayer) {
     }
@@ -84,4 +148,19 @@ public class CustomReconnectHandler implements ReconnectHandler {
     public void close() {
     }
 
+    /**
+     * The server types players are sent to when they join the network
+     */
+    private static final class DefaultTypes {
+        static final DefaultTypes EMPTY = new DefaultTypes(null, Collections.emptyList());
+
+        private final String network;
+        private final List<String> types;
+        private final long loaded = System.currentTimeMillis();
+
+        DefaultTypes(String network, List<String> types) {
+            this.network = network;
+            this.types = types;
+        }
+    }
 }
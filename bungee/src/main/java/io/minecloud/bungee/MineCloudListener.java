@@ -15,11 +15,13 @@
  */
 package io.minecloud.bungee;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import io.minecloud.MineCloud;
 import io.minecloud.models.bungee.Bungee;
 import io.minecloud.models.external.ExternalServer;
 import io.minecloud.models.external.ExternalServerRepository;
-import io.minecloud.models.server.Server;
-import io.minecloud.models.server.ServerRepository;
+import io.minecloud.models.server.LiveState;
 import lombok.RequiredArgsConstructor;
 import net.md_5.bungee.api.AbstractReconnectHandler;
 import net.md_5.bungee.api.ServerPing;
@@ -31,74 +33,146 @@ import net.md_5.bungee.api.event.ServerKickEvent;
 import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.event.EventHandler;
 
-import java.util.Collection;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 @RequiredArgsConstructor
 public class MineCloudListener implements Listener {
-    
+    private static final DBObject EXTERNAL_PLAYERS = new BasicDBObject("players", new BasicDBObject("$size",
+            new BasicDBObject("$ifNull", Arrays.asList("$onlinePlayers", Collections.emptyList()))));
+
     private final MineCloudPlugin plugin;
-    
-    private final ConcurrentHashMap<String, String> motd = new ConcurrentHashMap<>();
-    private String primaryMotd;
-    private long lastUpdated = 0;
-    private int onlinePlayers = -1;
-    private int maxOnline = -1;
+    private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+    private final Map<InetAddress, AtomicInteger> pings = new ConcurrentHashMap<>();
+    // Pings a second allowed per address, off (0) by default. The limit is per IP, so players
+    // behind a NAT or a proxy such as TCPShield share one budget: set it well above their peak.
+    private final int rateLimit = envInt("ping_rate_limit", 0);
+    private volatile PingSnapshot snapshot;
+
+    /**
+     * Starts refreshing the ping snapshot in the background, every ping_refresh_seconds
+     * (5 by default), and resetting the per address ping counts every second when limited
+     */
+    void start() {
+        long interval = Math.max(1, envInt("ping_refresh_seconds", 5));
+
+        plugin.getProxy().getScheduler().schedule(plugin, this::refresh, 0, interval, TimeUnit.SECONDS);
+
+        if (rateLimit > 0) {
+            plugin.getProxy().getScheduler().schedule(plugin, pings::clear, 1, 1, TimeUnit.SECONDS);
+        }
+    }
 
+    /**
+     * Answers from the snapshot taken last, without any I/O. Only pings arriving before the
+     * first snapshot wait for it, through an intent. Addresses sending more than
+     * ping_rate_limit pings a second (0 by default, for no limit) are disconnected.
+     */
     @EventHandler
     public void onPing(ProxyPingEvent event) {
+        if (rateLimit > 0 && !allow(event.getConnection().getAddress().getAddress())) {
+            event.getConnection().disconnect(new TextComponent(""));
+            return;
+        }
+
+        PingSnapshot current = snapshot;
+
+        if (current != null) {
+            respond(event, current);
+            return;
+        }
+
+        event.registerIntent(plugin);
+        loaded.whenComplete((ignored, ex) -> {
+            PingSnapshot first = snapshot;
+
+            if (first != null) {
+                respond(event, first);
+            }
+
+            event.completeIntent(plugin);
+        });
+    }
+
+    private boolean allow(InetAddress address) {
+        return pings.computeIfAbsent(address, (k) -> new AtomicInteger()).incrementAndGet() <= rateLimit;
+    }
+
+    private void respond(ProxyPingEvent event, PingSnapshot snapshot) {
         ServerPing ping = event.getResponse();
 
         if (ping == null) {
             ping = new ServerPing();
         }
-        
+
         ServerInfo forced = AbstractReconnectHandler.getForcedHost(event.getConnection());
-        
-        if (onlinePlayers == -1 || (System.currentTimeMillis() - lastUpdated) >= 5000L) {
+        ServerPing.PlayerInfo[] sample = ping.getPlayers() == null ? null : ping.getPlayers().getSample();
+
+        ping.setPlayers(new ServerPing.Players(snapshot.max, snapshot.online, sample));
+
+        String description = snapshot.descriptionFor(forced);
+
+        if (description != null) {
+            ping.setDescription(description);
+        }
+
+        event.setResponse(ping);
+    }
+
+    private void refresh() {
+        try {
             Bungee bungee = plugin.bungee();
 
             if (bungee == null) {
                 return;
             }
-            primaryMotd = bungee.type().motd();
-            
-            ServerRepository repository = plugin.mongo.repositoryBy(Server.class);
-            Collection<Server> servers = repository.find(repository.createQuery().field("network").equal(bungee.network()))
-                    .asList();
-            
+
+            // servers report their players to the live state, only external servers are read from Mongo
+            List<LiveState> servers = MineCloud.instance().liveStates().statesOf(bungee.network().name());
+
             ExternalServerRepository externalRepo = plugin.mongo.repositoryBy(ExternalServer.class);
-            Collection<ExternalServer> externalServers = externalRepo.find(externalRepo.createQuery()
-                    .field("network").equal(bungee.network()))
-                    .asList();
+            List<DBObject> externalServers = externalRepo.project(externalRepo.createQuery()
+                    .field("network").equal(bungee.network()), EXTERNAL_PLAYERS);
 
             int online = 0;
-            for (Server server : servers) {
-                online += server.onlinePlayers().size();
+            for (LiveState server : servers) {
+                online += server.players();
             }
-            
-            for (ExternalServer server : externalServers) {
-                online += server.onlinePlayers().size();
-                //Cache MOTDs
-                if (server.name() != null && server.type().motd() != null) {
-                    motd.put(server.name(), server.type().motd());
-                }
+
+            for (DBObject server : externalServers) {
+                online += ((Number) server.get("players")).intValue();
             }
 
-            onlinePlayers = online;
-            maxOnline = bungee.network().pingCap();
-            lastUpdated = System.currentTimeMillis();
+            snapshot = new PingSnapshot(online, bungee.network().pingCap(), bungee.type().motd(),
+                    plugin.registry().motds());
+        } catch (Exception ex) {
+            plugin.getLogger().log(Level.WARNING, "Unable to refresh the ping snapshot", ex);
+        } finally {
+            // pings waiting on the first snapshot get the default response if there is none
+            loaded.complete(null);
         }
+    }
 
-        ping.setPlayers(new ServerPing.Players(maxOnline, onlinePlayers, ping.getPlayers().getSample()));
-        //MOTD
-        if (forced != null && motd.containsKey(forced.getName())) {
-            ping.setDescription(motd.get(forced.getName()));
-        } else if (primaryMotd != null && !primaryMotd.isEmpty()) {
-            ping.setDescription(primaryMotd);
+    private static int envInt(String name, int def) {
+        String value = System.getenv(name);
+
+        if (value == null) {
+            return def;
         }
 
-        event.setResponse(ping);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            return def;
+        }
     }
 
     @EventHandler
@@ -127,4 +201,28 @@ public class MineCloudListener implements Listener {
         event.setCancelServer(server);
         event.setCancelled(true);
     }
+
+    /**
+     * Everything a ping response needs, swapped in whole on every refresh
+     */
+    private static final class PingSnapshot {
+        private final int online;
+        private final int max;
+        private final String primaryMotd;
+        // MOTDs of the external servers, for players connecting through their forced host
+        private final Map<String, String> motds;
+
+        PingSnapshot(int online, int max, String primaryMotd, Map<String, String> motds) {
+            this.online = online;
+            this.max = max;
+            this.primaryMotd = primaryMotd == null || primaryMotd.isEmpty() ? null : primaryMotd;
+            this.motds = motds;
+        }
+
+        String descriptionFor(ServerInfo forced) {
+            String motd = forced == null ? null : motds.get(forced.getName());
+
+            return motd != null ? motd : primaryMotd;
+        }
+    }
 }
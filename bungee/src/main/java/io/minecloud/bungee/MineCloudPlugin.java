@@ -18,6 +18,7 @@ package io.minecloud.bungee;
 import com.google.common.io.Files;
 import com.mongodb.BasicDBObject;
 import io.minecloud.Cached;
+import io.minecloud.ContentCache;
 import io.minecloud.MineCloud;
 import io.minecloud.MineCloudException;
 import io.minecloud.bungee.cardinal.CardinalCallback;
@@ -26,14 +27,14 @@ import io.minecloud.db.mongo.MongoDatabase;
 import io.minecloud.db.redis.RedisDatabase;
 import io.minecloud.db.redis.msg.MessageType;
 import io.minecloud.db.redis.msg.binary.MessageInputStream;
+import io.minecloud.db.redis.msg.schema.TeleportMessage;
 import io.minecloud.db.redis.pubsub.SimpleRedisChannel;
 import io.minecloud.models.bungee.Bungee;
 import io.minecloud.models.bungee.type.BungeeType;
 import io.minecloud.models.external.ExternalServer;
-import io.minecloud.models.external.ExternalServerRepository;
 import io.minecloud.models.plugins.PluginType;
+import io.minecloud.models.server.LiveStateRegistry;
 import io.minecloud.models.server.Server;
-import io.minecloud.models.server.ServerRepository;
 import io.minecloud.models.server.type.ServerType;
 import lombok.Getter;
 import net.md_5.bungee.api.ChatColor;
@@ -47,7 +48,6 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
-import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -55,19 +55,21 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 public class MineCloudPlugin extends Plugin {
     
     public static final String PREFIX = "" + ChatColor.BLUE + ChatColor.BOLD + "Cardinal> " 
             + ChatColor.AQUA;
     
+    private static final long ANTI_ENTROPY_INTERVAL = 30L;
+
     @Getter
     private static MineCloudPlugin instance;
     
     Cached<Bungee> bungee;
     MongoDatabase mongo;
     RedisDatabase redis;
+    private ServerRegistry registry;
     
     @Getter
     private CardinalCallback cardinalExtension;
@@ -80,6 +82,7 @@ public class MineCloudPlugin extends Plugin {
 
         mongo = MineCloud.instance().mongo();
         redis = MineCloud.instance().redis();
+        registry = new ServerRegistry(this);
 
         try {
             Files.write(ManagementFactory.getRuntimeMXBean().getName().split("@")[0].getBytes(Charset.defaultCharset()),
@@ -136,89 +139,68 @@ public class MineCloudPlugin extends Plugin {
 
         redis.addChannel(SimpleRedisChannel.create("teleport", redis)
                 .addCallback((message) -> {
-                    if (message.type() != MessageType.BINARY) {
+                    if (message.type() != MessageType.BINARY && message.type() != MessageType.SCHEMA) {
                         return;
                     }
 
-                    MessageInputStream stream = message.contents();
-                    ProxiedPlayer player = getProxy().getPlayer(stream.readString());
+                    TeleportMessage teleport = redis.codec().decode(TeleportMessage.TO_SERVER, message);
+                    ProxiedPlayer player = getProxy().getPlayer(teleport.player());
 
                     if (player == null) {
                         return;
                     }
 
-                    String name = stream.readString();
+                    String name = teleport.target();
                     ServerInfo info = getProxy().getServerInfo(name);
 
-                    if (info == null) {
-                        ServerRepository repository = mongo.repositoryBy(Server.class);
-                        Server server = repository.findOne("_id", name);
+                    if (info != null) {
+                        player.sendMessage(TextComponent.fromLegacyText(PREFIX + "Sending you to " + name));
+                        player.connect(info);
+                        return;
+                    }
+
+                    // look the server up off the subscriber thread, other messages keep flowing
+                    mongo.repositoryBy(Server.class).findFirstAsync(name).whenComplete((server, ex) -> {
+                        if (ex != null) {
+                            getLogger().log(Level.WARNING, "Unable to look up server " + name, ex);
+                            return;
+                        }
 
                         if (server != null) {
                             addServer(server);
-                            info = getProxy().getServerInfo(name);
                         }
-                    }
-                    player.sendMessage(TextComponent.fromLegacyText(PREFIX + "Sending you to " + name));
-                    player.connect(info);
+
+                        player.sendMessage(TextComponent.fromLegacyText(PREFIX + "Sending you to " + name));
+                        player.connect(getProxy().getServerInfo(name));
+                    });
                 }));
 
         redis.addChannel(SimpleRedisChannel.create("teleport-type", redis)
                 .addCallback((message) -> {
-                    if (message.type() != MessageType.BINARY) {
+                    if (message.type() != MessageType.BINARY && message.type() != MessageType.SCHEMA) {
                         return;
                     }
 
-                    MessageInputStream stream = message.contents();
-                    ProxiedPlayer player = getProxy().getPlayer(stream.readString());
+                    TeleportMessage teleport = redis.codec().decode(TeleportMessage.TO_TYPE, message);
+                    ProxiedPlayer player = getProxy().getPlayer(teleport.player());
 
                     if (player == null) {
                         return;
                     }
 
-                    ServerType type = mongo.repositoryBy(ServerType.class)
-                            .findFirst(stream.readString());
-
-                    if (type == null) {
-                        getLogger().log(Level.SEVERE, "Received teleport message with invalid server type");
-                        return;
-                    }
-
-                    ServerRepository repository = mongo.repositoryBy(Server.class);
-                    List<Server> servers = repository.find(repository.createQuery()
-                            .field("network").equal(bungee().network())
-                            .field("type").equal(type)
-                            .field("port").notEqual(-1)
-                            .field("ramUsage").notEqual(-1))
-                            .asList();
-
-                    Collections.sort(servers, (a, b) -> a.onlinePlayers().size() - b.onlinePlayers().size());
-
-                    if (servers.size() == 0) {
-                        player.sendMessage(TextComponent.fromLegacyText(PREFIX + "Cannot find a server to move you to"));
-                        return;
-                    }
-                    //Players can only be teleported to joinable servers
-                    servers = servers.stream()
-                            .filter(server -> server.isJoinable())
-                            .collect(Collectors.toList());
-                    if (servers.size() == 0) {
-                        player.sendMessage(TextComponent.fromLegacyText(PREFIX + "All servers are current being used. "
-                                + "Please wait for new servers to become available."));
-                        return;
-                    }
-                    
-                    Server server = servers.get(0);
-                    ServerInfo info = getProxy().getServerInfo(server.name());
-
-                    if (info == null) {
-                        getLogger().warning("Cannot find " + server.name() + " in ServerInfo store, adding.");
-                        addServer(server);
-                        info = getProxy().getServerInfo(server.name());
-                    }
-                    
-                    player.sendMessage(TextComponent.fromLegacyText(PREFIX + "Sending you to " + server.name()));
-                    player.connect(info);
+                    mongo.repositoryBy(ServerType.class).findFirstAsync(teleport.target())
+                            .thenAccept((type) -> {
+                                if (type == null) {
+                                    getLogger().log(Level.SEVERE, "Received teleport message with invalid server type");
+                                    return;
+                                }
+
+                                teleportToType(player, type.name());
+                            })
+                            .exceptionally((ex) -> {
+                                getLogger().log(Level.WARNING, "Unable to find a server of type " + teleport.target(), ex);
+                                return null;
+                            });
                 }));
         
         //Handles various subchannels. Save resources by using one master redis channel
@@ -242,8 +224,7 @@ public class MineCloudPlugin extends Plugin {
         type.plugins().forEach((plugin) -> {
             String version = plugin.version();
             PluginType pluginType = plugin.type();
-            File pluginsContainer = new File("/mnt/minecloud/plugins/",
-                    pluginType.name() + "/" + version);
+            File pluginsContainer = ContentCache.local().plugin(pluginType.name(), version);
             List<File> plugins = new ArrayList<>();
 
             getLogger().info("Loading " + pluginType.name() + "...");
@@ -268,8 +249,8 @@ public class MineCloudPlugin extends Plugin {
                 plugins.add(pl);
             }
 
-            File configs = new File("/mnt/minecloud/configs/",
-                    pluginType.name() + "/" + (plugin.config() == null ? version : plugin.config()));
+            File configs = ContentCache.local().config(pluginType.name(),
+                    plugin.config() == null ? version : plugin.config());
             File configContainer = new File(nContainer, pluginType.name());
 
             File defaultPluginContainer = new File("plugins/" + pluginType.name());
@@ -283,24 +264,15 @@ public class MineCloudPlugin extends Plugin {
         getProxy().getScheduler().schedule(this, () -> {
             this.redis.connected(); //Checks for Redis death, if it's dead it will reconnect.
 
-            ServerRepository repository = mongo.repositoryBy(Server.class);
-            List<Server> servers = repository.find(repository.createQuery()
-                    .field("network").equal(bungee().network()))
-                    .asList();
-
-            servers.removeIf((s) -> s.port() == -1);
-            servers.forEach(this::addServer);
-            
-            //Now do external servers
-            ExternalServerRepository externalRepo = mongo.repositoryBy(ExternalServer.class);
-            List<ExternalServer> externalServers = externalRepo.find(externalRepo.createQuery()
-                    .field("network").equal(bungee().network()))
-                    .asList();
-            externalServers.removeIf((s) -> s.port() == -1);
-            externalServers.forEach(this::addServer);
+            registry.bootstrap(bungee().network());
+            getProxy().getScheduler().schedule(this, () -> registry.reconcile(bungee().network()),
+                    ANTI_ENTROPY_INTERVAL, ANTI_ENTROPY_INTERVAL, TimeUnit.SECONDS);
 
             getProxy().setReconnectHandler(new CustomReconnectHandler(this));
-            getProxy().getPluginManager().registerListener(this, new MineCloudListener(this));
+            MineCloudListener listener = new MineCloudListener(this);
+
+            listener.start();
+            getProxy().getPluginManager().registerListener(this, listener);
 
             // release plugin manager lock
             try {
@@ -358,25 +330,60 @@ public class MineCloudPlugin extends Plugin {
     }
 
     public void addServer(Server server) {
-        addServer(server.name(), server.node().privateIp(), server.port(), "");
+        registry.put(server);
     }
     
     public void addServer(ExternalServer server) {
-        addServer(server.name(), server.address(), server.port(), server.type().motd());
-    }
-    
-    private void addServer(String name, String ip, int port, String motd) {
-        ServerInfo info = getProxy().constructServerInfo(name,
-                new InetSocketAddress(ip, port),
-                motd, false);
-
-        getProxy().getServers().put(name, info);
-        getLogger().info("Added " + name + " to server list, " + ip +
-                ":" + port);
+        registry.put(server);
     }
 
     public void removeServer(String server) {
-        getProxy().getServers().remove(server);
+        registry.remove(server);
+    }
+
+    public ServerRegistry registry() {
+        return registry;
+    }
+
+    /**
+     * Sends the player to the joinable server of the type with the fewest players, leasing
+     * it a slot there through the live state plane
+     */
+    private void teleportToType(ProxiedPlayer player, String type) {
+        LiveStateRegistry liveStates = MineCloud.instance().liveStates();
+        String network = bungee().network().name();
+        String name = liveStates.reserve(network, Collections.singletonList(type), player.getUniqueId());
+
+        if (name == null) {
+            if (liveStates.statesOf(network, type).isEmpty()) {
+                player.sendMessage(TextComponent.fromLegacyText(PREFIX + "Cannot find a server to move you to"));
+            } else {
+                //Players can only be teleported to joinable servers
+                player.sendMessage(TextComponent.fromLegacyText(PREFIX + "All servers are current being used. "
+                        + "Please wait for new servers to become available."));
+            }
+            return;
+        }
+
+        ServerInfo info = getProxy().getServerInfo(name);
+
+        if (info != null) {
+            player.sendMessage(TextComponent.fromLegacyText(PREFIX + "Sending you to " + name));
+            player.connect(info);
+            return;
+        }
+
+        getLogger().warning("Cannot find " + name + " in ServerInfo store, adding.");
+        mongo.repositoryBy(Server.class).findFirstAsync(name).whenComplete((server, ex) -> {
+            if (ex != null || server == null) {
+                player.sendMessage(TextComponent.fromLegacyText(PREFIX + "Cannot find a server to move you to"));
+                return;
+            }
+
+            addServer(server);
+            player.sendMessage(TextComponent.fromLegacyText(PREFIX + "Sending you to " + name));
+            player.connect(getProxy().getServerInfo(name));
+        });
     }
 
     public Bungee bungee() {
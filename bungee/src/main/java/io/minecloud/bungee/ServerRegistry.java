@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.bungee;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import io.minecloud.db.mongo.AbstractMongoRepository;
+import io.minecloud.models.external.ExternalServer;
+import io.minecloud.models.external.ExternalServerRepository;
+import io.minecloud.models.network.Network;
+import io.minecloud.models.server.Server;
+import io.minecloud.models.server.ServerRepository;
+import net.md_5.bungee.api.config.ServerInfo;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The servers and external servers of the bungee's network as the proxy knows them. It is
+ * loaded once on startup and then kept current by the start and shutdown notifications.
+ * Every so often it compares what it holds against the ids, nodes and ports in Mongo, and
+ * only when they differ loads or drops the servers which drifted.
+ */
+public class ServerRegistry {
+    private final MineCloudPlugin plugin;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    ServerRegistry(MineCloudPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    void bootstrap(Network network) {
+        ServerRepository repository = plugin.mongo.repositoryBy(Server.class);
+        ExternalServerRepository externalRepo = plugin.mongo.repositoryBy(ExternalServer.class);
+
+        repository.find(repository.createQuery()
+                .field("network").equal(network)
+                .field("port").notEqual(-1))
+                .forEach(this::put);
+        externalRepo.find(externalRepo.createQuery()
+                .field("network").equal(network)
+                .field("port").notEqual(-1))
+                .forEach(this::put);
+    }
+
+    public void put(Server server) {
+        put(new Entry(server.name(), server.node().entityId(), server.node().privateIp(), server.port(), "", false));
+    }
+
+    public void put(ExternalServer server) {
+        put(new Entry(server.name(), server.address(), server.address(), server.port(), server.type().motd(), true));
+    }
+
+    private void put(Entry entry) {
+        ServerInfo info = plugin.getProxy().constructServerInfo(entry.name,
+                new InetSocketAddress(entry.host, entry.port), entry.motd, false);
+
+        entries.put(entry.name, entry);
+        plugin.getProxy().getServers().put(entry.name, info);
+        plugin.getLogger().info("Added " + entry.name + " to server list, " + entry.host + ":" + entry.port);
+    }
+
+    public void remove(String name) {
+        entries.remove(name);
+        plugin.getProxy().getServers().remove(name);
+    }
+
+    /**
+     * @return the MOTDs of the external servers which have one, by server name
+     */
+    public Map<String, String> motds() {
+        Map<String, String> motds = new HashMap<>();
+
+        entries.forEach((name, entry) -> {
+            if (entry.external && entry.motd != null) {
+                motds.put(name, entry.motd);
+            }
+        });
+
+        return motds;
+    }
+
+    /**
+     * Compares what this registry holds to Mongo, repairing only the servers which differ
+     */
+    void reconcile(Network network) {
+        Map<String, String> remote = new HashMap<>();
+        Map<String, String> local = new HashMap<>();
+
+        ServerRepository repository = plugin.mongo.repositoryBy(Server.class);
+        ExternalServerRepository externalRepo = plugin.mongo.repositoryBy(ExternalServer.class);
+
+        // Snapshot before reading the database, a server added while it's read must not look removed
+        entries.forEach((name, entry) -> local.put(name, identity(entry.origin, entry.port)));
+
+        for (DBObject server : repository.project(repository.createQuery()
+                .field("network").equal(network)
+                .field("port").notEqual(-1), new BasicDBObject("node", 1).append("port", 1))) {
+            remote.put(String.valueOf(server.get("_id")),
+                    identity(AbstractMongoRepository.idOf(server.get("node")), server.get("port")));
+        }
+
+        for (DBObject server : externalRepo.project(externalRepo.createQuery()
+                .field("network").equal(network)
+                .field("port").notEqual(-1), new BasicDBObject("address", 1).append("port", 1))) {
+            remote.put(String.valueOf(server.get("_id")), identity(server.get("address"), server.get("port")));
+        }
+
+        if (remote.equals(local)) {
+            return;
+        }
+
+        int repaired = 0;
+
+        for (String name : local.keySet()) {
+            if (!remote.containsKey(name)) {
+                remove(name);
+                repaired++;
+            }
+        }
+
+        for (Map.Entry<String, String> entry : remote.entrySet()) {
+            if (entry.getValue().equals(local.get(entry.getKey()))) {
+                continue;
+            }
+
+            Server server = repository.findFirst(entry.getKey());
+
+            if (server != null) {
+                put(server);
+            } else {
+                ExternalServer external = externalRepo.findFirst(entry.getKey());
+
+                if (external != null) {
+                    put(external);
+                }
+            }
+
+            repaired++;
+        }
+
+        plugin.getLogger().info("Server list drifted from the database, repaired " + repaired + " servers");
+    }
+
+    private static String identity(Object origin, Object port) {
+        return origin + ":" + port;
+    }
+
+    private static final class Entry {
+        private final String name;
+        // the node id of a server, the address of an external server
+        private final String origin;
+        private final String host;
+        private final int port;
+        private final String motd;
+        private final boolean external;
+
+        Entry(String name, String origin, String host, int port, String motd, boolean external) {
+            this.name = name;
+            this.origin = origin;
+            this.host = host;
+            this.port = port;
+            this.motd = motd;
+            this.external = external;
+        }
+    }
+}
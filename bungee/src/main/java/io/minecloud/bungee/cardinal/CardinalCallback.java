@@ -19,10 +19,14 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.UUID;
 
+import io.minecloud.MineCloud;
 import io.minecloud.bungee.MineCloudPlugin;
 import io.minecloud.db.redis.msg.Message;
 import io.minecloud.db.redis.msg.MessageType;
 import io.minecloud.db.redis.msg.binary.MessageInputStream;
+import io.minecloud.db.redis.msg.schema.KickMessage;
+import io.minecloud.db.redis.msg.schema.MessageCodec;
+import io.minecloud.db.redis.msg.schema.PartyJoinMessage;
 import io.minecloud.db.redis.pubsub.ChannelCallback;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.chat.TextComponent;
@@ -38,18 +42,42 @@ public class CardinalCallback implements ChannelCallback {
         channels = new HashMap<>();
         
         channels.put("message", new MessageSubChannel());
-        channels.put("kick", new KickSubChannel());
-        channels.put("partyjoin", new PartyJoinSubChannel());
     }
 
     @Override
     public void call(Message message) throws IOException {
+        MessageCodec codec = MineCloud.instance().redis().codec();
+
+        if (message.type() == MessageType.SCHEMA) {
+            Object decoded = codec.decode(message);
+
+            if (decoded instanceof KickMessage) {
+                kick((KickMessage) decoded);
+            } else if (decoded instanceof PartyJoinMessage) {
+                partyJoin((PartyJoinMessage) decoded);
+            }
+            return;
+        }
+
         if (message.type() != MessageType.BINARY) {
             return;
         }
 
         MessageInputStream stream = message.contents();
-        SubChannel chan = channels.get(stream.readString());
+        String name = stream.readString();
+
+        //The legacy forms of the schema messages are read by their schemas, from the start
+        if (name.equals(KickMessage.SCHEMA.name())) {
+            kick(codec.decode(KickMessage.SCHEMA, message));
+            return;
+        }
+
+        if (name.equals(PartyJoinMessage.SCHEMA.name())) {
+            partyJoin(codec.decode(PartyJoinMessage.SCHEMA, message));
+            return;
+        }
+
+        SubChannel chan = channels.get(name);
         if (chan != null) {
             chan.call(stream);
         }
@@ -76,48 +104,28 @@ public class CardinalCallback implements ChannelCallback {
         }
     }
     
-    private class KickSubChannel implements SubChannel {
-        @Override
-        public void call(MessageInputStream stream) {
-            try {
-                String uuid = stream.readString();
-                String message = stream.readString();
-                
-                ProxiedPlayer player = ProxyServer.getInstance().getPlayer(UUID.fromString(uuid));
-                if (player != null) {
-                    ServerInfo info = ProxyServer.getInstance().getReconnectHandler().getServer(player);
-                    if (info != null) {
-                        player.connect(info);
-                    }
-                    player.sendMessage(ComponentSerializer.parse(message));
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+    private void kick(KickMessage kick) {
+        ProxiedPlayer player = ProxyServer.getInstance().getPlayer(kick.player());
+        if (player != null) {
+            ServerInfo info = ProxyServer.getInstance().getReconnectHandler().getServer(player);
+            if (info != null) {
+                player.connect(info);
             }
+            player.sendMessage(ComponentSerializer.parse(kick.reason()));
         }
     }
-    
-    private class PartyJoinSubChannel implements SubChannel {
-        @Override
-        public void call(MessageInputStream stream) {
-            try {
-                String server = stream.readString();
-                ServerInfo info = ProxyServer.getInstance().getServerInfo(server);
-                if (info == null) {
-                    return;
-                }
-                
-                int players = stream.readVarInt32();
-                for (int i=0; i < players; i++) {
-                    UUID uuid = UUID.fromString(stream.readString());
-                    ProxiedPlayer player = ProxyServer.getInstance().getPlayer(uuid);
-                    if (player != null) {
-                        player.sendMessage(TextComponent.fromLegacyText(MineCloudPlugin.PREFIX + "Sending you to " + server));
-                        player.connect(info);
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+
+    private void partyJoin(PartyJoinMessage party) {
+        ServerInfo info = ProxyServer.getInstance().getServerInfo(party.server());
+        if (info == null) {
+            return;
+        }
+
+        for (UUID uuid : party.players()) {
+            ProxiedPlayer player = ProxyServer.getInstance().getPlayer(uuid);
+            if (player != null) {
+                player.sendMessage(TextComponent.fromLegacyText(MineCloudPlugin.PREFIX + "Sending you to " + party.server()));
+                player.connect(info);
             }
         }
     }
@@ -59,6 +59,21 @@ public final class MineCloudCLI {
                 properties.getProperty("mongo-database"));
 
         MineCloud.instance().initiateMongo(mongo);
+        MineCloud.instance().mongo().ensureIndexes();
+
+        //Redis is optional for the CLI. Without it pushed types aren't broadcast on entity-changed,
+        //so every process keeps its cached copy until the cache expires, and nodes aren't asked to
+        //prefetch their contents
+        if (properties.containsKey("redis-host")) {
+            Credentials redis = new Credentials(new String[] {properties.getProperty("redis-host")},
+                    "",
+                    properties.getProperty("redis-password", "").toCharArray());
+
+            MineCloud.instance().initiateRedis(redis);
+        } else {
+            MineCloud.logger().warning("Redis is not configured (redis-host), pushed types will take up to " +
+                    "5 minutes to apply as other processes keep their cached copies until then");
+        }
 
         new MineCloudCLI();
     }
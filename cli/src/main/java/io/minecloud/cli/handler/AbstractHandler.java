@@ -17,7 +17,10 @@ package io.minecloud.cli.handler;
 
 import asg.cliche.Shell;
 import asg.cliche.ShellFactory;
+import io.minecloud.MineCloud;
 import io.minecloud.MineCloudException;
+import io.minecloud.db.redis.RedisDatabase;
+import io.minecloud.db.redis.msg.binary.MessageOutputStream;
 import io.minecloud.models.bungee.type.BungeeType;
 import io.minecloud.models.nodes.Node;
 import io.minecloud.models.plugins.Plugin;
@@ -70,6 +73,28 @@ public abstract class AbstractHandler {
         return options.get(option);
     }
 
+    /**
+     * Asks the daemons to cache the files of a pushed type, if the CLI was set up with Redis
+     *
+     * @param kind either server or bungee
+     */
+    protected void prefetch(String kind, String name) {
+        RedisDatabase redis = MineCloud.instance().redis();
+
+        if (redis == null) {
+            return;
+        }
+
+        try (MessageOutputStream os = new MessageOutputStream()) {
+            os.writeString(kind);
+            os.writeString(name);
+
+            redis.publish("content-prefetch", os.toMessage());
+        } catch (IOException | RuntimeException ex) {
+            System.out.println("Unable to ask nodes to prefetch " + name + ": " + ex.getMessage());
+        }
+    }
+
     public Shell currentShell() {
         return current;
     }
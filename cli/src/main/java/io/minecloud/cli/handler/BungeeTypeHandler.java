@@ -150,6 +150,7 @@ public class BungeeTypeHandler extends AbstractHandler {
         MineCloud.instance().mongo()
                 .repositoryBy(BungeeType.class)
                 .save(type);
+        prefetch("bungee", type.name());
         return "Successfully pushed modifications to database!";
     }
 
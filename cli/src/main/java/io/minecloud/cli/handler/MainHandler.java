@@ -17,6 +17,13 @@ package io.minecloud.cli.handler;
 
 import asg.cliche.Command;
 import asg.cliche.Param;
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+import io.minecloud.MineCloud;
+import io.minecloud.db.redis.RedisDatabase;
+import redis.clients.jedis.Jedis;
+
+import java.util.Map;
 
 public class MainHandler extends AbstractHandler {
     public MainHandler() {
@@ -62,5 +69,52 @@ public class MainHandler extends AbstractHandler {
     public void bulk(@Param(name = "network") String name) {
         enterShell(new BulkUtilHandler(name), "bulk");
     }
-    
+
+    /**
+     * Explains a sample of every query shape the processes recorded and lists those Mongo
+     * answers by scanning the whole collection
+     */
+    @Command(name = "unindexed-queries")
+    public String unindexedQueries() {
+        RedisDatabase redis = MineCloud.instance().redis();
+
+        if (redis == null) {
+            return "Redis is not configured, no queries were recorded";
+        }
+
+        Map<String, String> shapes;
+        Map<String, String> samples;
+
+        try (Jedis jedis = redis.grabResource()) {
+            shapes = jedis.hgetAll("query-shapes");
+            samples = jedis.hgetAll("query-samples");
+        }
+
+        StringBuilder builder = new StringBuilder();
+
+        shapes.entrySet().stream()
+                .sorted((a, b) -> Long.compare(Long.parseLong(b.getValue()), Long.parseLong(a.getValue())))
+                .forEach((entry) -> {
+                    String sample = samples.get(entry.getKey());
+                    String[] shape = entry.getKey().split("\\|", 2);
+
+                    // queries without a filter read the whole collection on purpose
+                    if (sample == null || shape.length < 2 || shape[1].isEmpty()) {
+                        return;
+                    }
+
+                    DBObject plan = MineCloud.instance().mongo().db().getCollection(shape[0])
+                            .find((DBObject) JSON.parse(sample))
+                            .explain();
+                    String explained = plan.toString();
+
+                    if (explained.contains("COLLSCAN") || explained.contains("BasicCursor")) {
+                        builder.append(shape[0]).append(" on [").append(shape[1]).append("]: ")
+                                .append(entry.getValue()).append(" queries, e.g. ").append(sample)
+                                .append('\n');
+                    }
+                });
+
+        return builder.length() == 0 ? "Every recorded query uses an index" : builder.toString().trim();
+    }
 }
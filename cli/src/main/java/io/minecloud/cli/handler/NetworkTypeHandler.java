@@ -18,6 +18,8 @@ package io.minecloud.cli.handler;
 import asg.cliche.Command;
 import asg.cliche.Param;
 import io.minecloud.MineCloud;
+import io.minecloud.db.mongo.AbstractMongoRepository;
+import io.minecloud.db.mongo.model.MongoEntity;
 import io.minecloud.models.bungee.Bungee;
 import io.minecloud.models.bungee.type.BungeeType;
 import io.minecloud.models.external.ExternalServer;
@@ -94,6 +96,25 @@ public class NetworkTypeHandler extends AbstractHandler {
         return "Successfully added " + name + " to the Network!";
     }
     
+    @Command
+    public String setWarmPool(@Param(name = "server-name") String name, @Param(name = "size") int size) {
+        if (type.serverMetadata() == null) {
+            return name + " is not on the network!";
+        }
+
+        Optional<ServerNetworkMetadata> optional = type.serverMetadata().stream()
+                .filter((md) -> md.type().name().equalsIgnoreCase(name))
+                .findFirst();
+
+        if (!optional.isPresent()) {
+            return name + " is not on the network!";
+        }
+
+        optional.get().setWarmPool(Math.max(0, size));
+
+        return "Set the warm pool of " + name + " to " + Math.max(0, size) + " servers";
+    }
+
     @Command
     public String addExternalServer(@Param(name = "server-name") String name) {
         ExternalServerType serverType = MineCloud.instance().mongo()
@@ -246,48 +267,43 @@ public class NetworkTypeHandler extends AbstractHandler {
     @Command
     public String restartAll() {
         //Servers First
-        type.servers().forEach(server -> {
-            MineCloud.instance().mongo().repositoryBy(Server.class).delete(server);
-        });
+        deleteAll(Server.class);
         //Then Bungees
-        type.bungees().forEach(bungee -> {
-            MineCloud.instance().mongo().repositoryBy(Bungee.class).delete(bungee);
-        });
+        deleteAll(Bungee.class);
         //Then external servers (just a refresh, doesn't actually restart them)
-        type.externalServers().forEach(server -> {
-            MineCloud.instance().mongo().repositoryBy(ExternalServer.class).delete(server);
-        });
+        deleteAll(ExternalServer.class);
         
         return "Restarting all servers and bungees...";
     }
     
     @Command
     public String restartServers() {
-        type.servers().forEach(server -> {
-            MineCloud.instance().mongo().repositoryBy(Server.class).delete(server);
-        });
+        deleteAll(Server.class);
         //Then external servers (just a refresh, doesn't actually restart them)
-        type.externalServers().forEach(server -> {
-            MineCloud.instance().mongo().repositoryBy(ExternalServer.class).delete(server);
-        });
+        deleteAll(ExternalServer.class);
         return "Restarting all servers...";
     }
     
     @Command
     public String refreshExternal() {
-        type.externalServers().forEach(server -> {
-            MineCloud.instance().mongo().repositoryBy(ExternalServer.class).delete(server);
-        });
+        deleteAll(ExternalServer.class);
         return "Refreshing external servers...";
     }
     
     @Command
     public String restartBungees() {
-        type.bungees().forEach(bungee -> {
-            MineCloud.instance().mongo().repositoryBy(Bungee.class).delete(bungee);
-        });
+        deleteAll(Bungee.class);
         return "Restarting all bungees...";
     }
+
+    /**
+     * Removes every entry of the network in one go, the daemons stop whatever lost its entry
+     */
+    private <T extends MongoEntity> void deleteAll(Class<T> model) {
+        AbstractMongoRepository<T> repository = MineCloud.instance().mongo().repositoryBy(model);
+
+        repository.deleteByQuery(repository.createQuery().field("network").equal(type));
+    }
     
     @Command
     public String pingCap(@Param(name = "cap") int cap) {
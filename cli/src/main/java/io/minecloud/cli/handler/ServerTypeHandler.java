@@ -67,6 +67,12 @@ public class ServerTypeHandler extends AbstractHandler {
         return "Set timeout to " + timeOut + "s successfully!";
     }
 
+    @Command
+    public String deployPriority(@Param(name = "priority") int priority) {
+        type.setDeployPriority(priority);
+        return "Set deploy priority to " + priority;
+    }
+
     @Command
     public String maxPlayers(@Param(name = "max-players") int max) {
         if (max < 0) {
@@ -243,6 +249,7 @@ public class ServerTypeHandler extends AbstractHandler {
         MineCloud.instance().mongo()
                 .repositoryBy(ServerType.class)
                 .save(type);
+        prefetch("server", type.name());
         return "Successfully pushed modifications to database!";
     }
 
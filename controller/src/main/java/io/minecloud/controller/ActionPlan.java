@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.controller;
+
+import io.minecloud.MineCloud;
+import io.minecloud.db.mongo.MongoDatabase;
+import io.minecloud.db.redis.pubsub.PublishBatch;
+import io.minecloud.models.bungee.type.BungeeType;
+import io.minecloud.models.external.ExternalServerType;
+import io.minecloud.models.network.Network;
+import io.minecloud.models.network.server.ServerNetworkMetadata;
+import io.minecloud.models.server.Server;
+import io.minecloud.models.server.ServerMetadata;
+import io.minecloud.models.server.ServerRepository;
+import io.minecloud.models.server.type.ServerType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The changes a reconciliation decided on, applied once the whole snapshot has been evaluated
+ */
+public final class ActionPlan {
+    private final Set<String> removals = new LinkedHashSet<>();
+    private final List<Deployment<ExternalServerType>> externalServers = new ArrayList<>();
+    private final List<Deployment<BungeeType>> bungees = new ArrayList<>();
+    private final List<Deployment<ServerType>> servers = new ArrayList<>();
+    private final List<Deployment<ServerType>> standbyServers = new ArrayList<>();
+    private final List<Deployment<ServerType>> promotions = new ArrayList<>();
+
+    ActionPlan() {
+    }
+
+    void removeServer(String name) {
+        removals.add(name);
+    }
+
+    void setupExternalServer(Network network, ExternalServerType type) {
+        externalServers.add(new Deployment<>(network, type));
+    }
+
+    void deployBungee(Network network, BungeeType type) {
+        bungees.add(new Deployment<>(network, type));
+    }
+
+    void deployServer(Network network, ServerType type) {
+        servers.add(new Deployment<>(network, type));
+    }
+
+    void deployStandbyServer(Network network, ServerType type) {
+        standbyServers.add(new Deployment<>(network, type));
+    }
+
+    void promoteServer(String name, Network network, ServerNetworkMetadata metadata) {
+        promotions.add(new Deployment<>(network, metadata.type(), name, metadata.maximumAmount()));
+    }
+
+    public boolean isEmpty() {
+        return removals.isEmpty() && externalServers.isEmpty() && bungees.isEmpty() && servers.isEmpty()
+                && standbyServers.isEmpty() && promotions.isEmpty();
+    }
+
+    public void execute(Controller controller, MongoDatabase mongo) {
+        ServerRepository repository = mongo.repositoryBy(Server.class);
+
+        //Promotions are instant, do them before anything slower
+        for (Deployment<ServerType> promotion : promotions) {
+            if (repository.promote(promotion.server)) {
+                //Routable now rather than at the server's next report
+                MineCloud.instance().liveStates().setJoinable(promotion.server, promotion.network.name(),
+                        promotion.type.name(), true);
+                MineCloud.logger().info("Promoted standby server " + promotion.server + " on " + promotion.network.name());
+            } else if (hasRoom(repository, promotion)) {
+                //It went away since the snapshot, start a regular server in its place
+                servers.add(promotion);
+            } else {
+                MineCloud.logger().info("Standby server " + promotion.server + " went away, " +
+                        promotion.type.name() + " is at its maximum on " + promotion.network.name());
+            }
+        }
+
+        if (!removals.isEmpty()) {
+            repository.deleteByQuery(repository.createQuery().field("_id").in(removals));
+            MineCloud.logger().info("Removed servers " + removals);
+        }
+
+        externalServers.forEach((deployment) -> deployment.network.setupExternalServer(deployment.type));
+
+        try (PublishBatch batch = MineCloud.instance().redis().batch()) {
+            bungees.forEach((deployment) -> controller.deployBungee(deployment.network, deployment.type));
+        }
+
+        List<Deployment<ServerType>> pending = new ArrayList<>(servers);
+        List<Deployment<ServerType>> pendingStandby = new ArrayList<>(standbyServers);
+
+        //Nodes pick server numbers by looking at the database, so two servers of the same type
+        //are spaced apart while servers of different types go out together
+        while (!pending.isEmpty() || !pendingStandby.isEmpty()) {
+            Set<String> types = new HashSet<>();
+
+            try (PublishBatch batch = MineCloud.instance().redis().batch()) {
+                deployRound(pending, types);
+                deployRound(pendingStandby, types, new ServerMetadata(ServerMetadata.STANDBY, "true"));
+            }
+
+            if (!pending.isEmpty() || !pendingStandby.isEmpty()) {
+                try {
+                    Thread.sleep(200L);
+                } catch (InterruptedException ignored) {}
+            }
+        }
+    }
+
+    /**
+     * Whether the type stays under its maximum server count with one more server, counting
+     * what is in the database now and what this plan deploys
+     */
+    private boolean hasRoom(ServerRepository repository, Deployment<ServerType> promotion) {
+        long existing = repository.count(repository.createQuery()
+                .field("network").equal(promotion.network)
+                .field("type").equal(promotion.type));
+        long planned = servers.stream().filter((deployment) -> sameType(deployment, promotion)).count()
+                + standbyServers.stream().filter((deployment) -> sameType(deployment, promotion)).count();
+
+        return existing + planned < promotion.maximum;
+    }
+
+    private static boolean sameType(Deployment<ServerType> first, Deployment<ServerType> second) {
+        return first.network.name().equals(second.network.name()) && first.type.name().equals(second.type.name());
+    }
+
+    private void deployRound(List<Deployment<ServerType>> deployments, Set<String> types, ServerMetadata... metadata) {
+        Iterator<Deployment<ServerType>> iterator = deployments.iterator();
+
+        while (iterator.hasNext()) {
+            Deployment<ServerType> deployment = iterator.next();
+
+            if (types.add(deployment.type.name())) {
+                deploy(deployment, metadata);
+                iterator.remove();
+            }
+        }
+    }
+
+    private void deploy(Deployment<ServerType> deployment, ServerMetadata... metadata) {
+        MineCloud.logger().info("Sent deploy message to " + deployment.network.deployServer(deployment.type, metadata).name() +
+                " for server type " + deployment.type.name() + " on " + deployment.network.name() +
+                (metadata.length == 0 ? "" : " (standby)"));
+    }
+
+    @Override
+    public String toString() {
+        return "ActionPlan(removals=" + removals.size() + ", externalServers=" + externalServers.size() +
+                ", bungees=" + bungees.size() + ", servers=" + servers.size() +
+                ", standbyServers=" + standbyServers.size() + ", promotions=" + promotions.size() + ")";
+    }
+
+    private static final class Deployment<T> {
+        private final Network network;
+        private final T type;
+        private final String server;
+        private final int maximum;
+
+        private Deployment(Network network, T type) {
+            this(network, type, null, Integer.MAX_VALUE);
+        }
+
+        private Deployment(Network network, T type, String server, int maximum) {
+            this.network = network;
+            this.type = type;
+            this.server = server;
+            this.maximum = maximum;
+        }
+
+    }
+}
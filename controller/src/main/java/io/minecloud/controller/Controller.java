@@ -16,28 +16,28 @@
 package io.minecloud.controller;
 
 import io.minecloud.MineCloud;
+import io.minecloud.MineCloudException;
+import io.minecloud.controller.scaling.PredictiveScalingPolicy;
+import io.minecloud.controller.scaling.ScalingPolicy;
+import io.minecloud.controller.scaling.StaticScalingPolicy;
 import io.minecloud.db.Credentials;
 import io.minecloud.db.mongo.MongoDatabase;
 import io.minecloud.db.redis.RedisDatabase;
+import io.minecloud.db.redis.msg.MessageType;
+import io.minecloud.db.redis.msg.binary.MessageInputStream;
 import io.minecloud.db.redis.pubsub.SimpleRedisChannel;
 import io.minecloud.models.bungee.Bungee;
 import io.minecloud.models.bungee.BungeeRepository;
 import io.minecloud.models.bungee.type.BungeeType;
-import io.minecloud.models.external.ExternalServerType;
 import io.minecloud.models.network.Network;
-import io.minecloud.models.network.server.ServerNetworkMetadata;
 import io.minecloud.models.nodes.Node;
-import io.minecloud.models.server.Server;
-import io.minecloud.models.server.ServerRepository;
-import io.minecloud.models.server.type.ServerRole;
-import io.minecloud.models.server.type.ServerType;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Properties;
-import java.util.stream.IntStream;
 
 public class Controller {
     private static Controller instance;
@@ -45,120 +45,63 @@ public class Controller {
     private final List<String> nodesUsed = new ArrayList<>();
     private final RedisDatabase redis;
     private final MongoDatabase mongo;
+    private final ReconciliationEngine engine;
+    private final ReconciliationTrigger trigger = new ReconciliationTrigger(500L, 2000L);
+    private final LoadTracker loadTracker = new LoadTracker(0.75);
 
-    private Controller() {
+    private Controller(Properties properties) {
         instance = this;
 
+        this.engine = new ReconciliationEngine(scalingPolicy(properties));
+
         this.redis = MineCloud.instance().redis();
         this.mongo = MineCloud.instance().mongo();
 
-        redis.addChannel(SimpleRedisChannel.create("bungee-create", redis));
-        redis.addChannel(SimpleRedisChannel.create("server-create", redis));
+        if (properties.containsKey("message-codec")) {
+            redis.codec().setEnabled(properties.getProperty("message-codec").equalsIgnoreCase("schema"));
+        }
+
+        //Reconcile as soon as capacity changes or player load crosses the threshold
+        redis.addChannel(SimpleRedisChannel.create("server-start-notif", redis)
+                .addCallback((message) -> trigger.request()));
+        redis.addChannel(SimpleRedisChannel.create("server-shutdown-notif", redis)
+                .addCallback((message) -> trigger.request()));
+        redis.addChannel(SimpleRedisChannel.create("player-presence", redis)
+                .addCallback((message) -> {
+                    if (message.type() != MessageType.BINARY)
+                        return;
+
+                    MessageInputStream stream = message.contents();
+
+                    stream.readString(); // server id
+                    String network = stream.readString();
+                    String type = stream.readString();
+                    int delta = stream.readVarInt32() - stream.readVarInt32();
+
+                    if (loadTracker.playersChanged(network, type, delta)) {
+                        trigger.request();
+                    }
+                }));
 
         while (!Thread.currentThread().isInterrupted()) {
             this.redis.connected(); //Checks for Redis death, if it's dead it will reconnect.
 
             nodesUsed.clear();
 
-            for (Network network : mongo.repositoryBy(Network.class).models()) {
-                //Ensure bungees are deployed
-                network.bungeeMetadata().forEach((type, amount) -> {
-                    int difference = amount - network.bungeesOnline(type);
+            Collection<Network> networks = mongo.repositoryBy(Network.class).models();
+            NetworkSnapshot snapshot = NetworkSnapshot.capture(mongo, MineCloud.instance().liveStates());
+            ActionPlan plan = engine.plan(networks, snapshot);
 
-                    if (difference > 0) {
-                        IntStream.range(0, difference)
-                                .forEach((i) -> deployBungee(network, type));
-                    }
-                });
-
-                //Remove invalid servers
-                network.servers().stream()
-                        .filter((server) -> server.ramUsage() != -1 && server.port() == -1)
-                        .forEach((server) -> mongo.repositoryBy(Server.class).delete(server));
-                
-                for (Server server : network.servers()) {
-                    boolean found = false;
-                    for (ServerNetworkMetadata data : network.serverMetadata()) {
-                        if (data.type().name().equals(server.type().name())) {
-                            found = true;
-                        }
-                    }
-                    if (found == false) {
-                        mongo.repositoryBy(Server.class).delete(server);
-                    }
-                }
-                
-                //Check external servers
-                for (ExternalServerType type : network.externalServerTypes()) {
-                    if (!network.isExternalServerOnline(type)) {
-                        network.setupExternalServer(type);
-                    }
-                }
-                
-                for (ServerNetworkMetadata metadata : network.serverMetadata()) {
-                    ServerRepository repository = mongo.repositoryBy(Server.class);
-                    List<Server> servers = repository.find(repository.createQuery()
-                            .field("type").equal(metadata.type())
-                            .field("network").equal(network))
-                            .asList();
-                    
-                    int serversOnline = network.serversOnline(metadata.type());
-                    
-                    int neededServers = 0;
-                    //Calculate needed servers from players online
-                    if (metadata.type().serverRole() == ServerRole.LOBBY) {
-                        int space = metadata.type().maxPlayers() * serversOnline;
-                        int onlinePlayers = servers.stream()
-                                .flatMapToInt((s) -> IntStream.of(s.onlinePlayers().size()))
-                                .sum();
-                        //If we are at > 75% of current capacity, launch more servers
-                        int scaledServers = onlinePlayers > (space * 0.75) ?
-                                (int) Math.floor(onlinePlayers / (space * 0.75)) + 1 : 0;
-                        int requiredServers = metadata.minimumAmount() - serversOnline;
-
-                        if (requiredServers < 0) {
-                            requiredServers = 0;
-                        }
-                        
-                        neededServers = requiredServers + scaledServers;
-                    //Or from the amount of servers that are available for play
-                    } else if (metadata.type().serverRole() == ServerRole.GAME) {
-                        int availableServers = network.serversAvailable(metadata.type());
-                        //No servers available? Launch one!
-                        neededServers = Math.max(0, metadata.minimumAmount() - availableServers);
-                    }
-                    
-                    //Don't go over the maximum server count
-                    if ((neededServers + servers.size()) > metadata.maximumAmount()) {
-                        neededServers = metadata.maximumAmount() - servers.size();
-                    }
+            loadTracker.reset(networks, snapshot);
 
-                    if (neededServers > 0) {
-                        for (int i=0; i < neededServers; i++) {
-                            try {
-                                Thread.sleep(200L);
-                            } catch (InterruptedException ignored) {}
-                            
-                            ServerType type = metadata.type();
-                            MineCloud.logger().info("Sent deploy message to " + network.deployServer(type).name() +
-                                    " for server type " + type.name() + " on " + network.name());
-                        }
-                    } else if (metadata.type().defaultServer() && serversOnline > metadata.minimumAmount()){
-                        //Check for empty default servers to remove
-                        for (Server server : servers) {
-                            //Make sure we don't go below the minimum amount
-                            if (serversOnline >= metadata.minimumAmount() 
-                                    && server.onlinePlayers().size() == 0) {
-                                mongo.repositoryBy(Server.class).delete(server);
-                                serversOnline--;
-                            }
-                        }
-                    }
-                }
+            if (!plan.isEmpty()) {
+                MineCloud.logger().info("Executing " + plan);
+                plan.execute(this, mongo);
             }
 
+            //Events wake us early, the timeout is a safety net for anything they miss
             try {
-                Thread.sleep(10000L);
+                trigger.await(10000L);
             } catch (InterruptedException ignored) {
                 // I don't care
             }
@@ -182,7 +125,7 @@ public class Controller {
 
         if (!properties.containsKey("mongo-hosts")) {
             MineCloud.runSetup(properties, file);
-            new Controller();
+            new Controller(properties);
         }
 
         Credentials mongo = new Credentials(properties.getProperty("mongo-hosts").split(";"),
@@ -194,9 +137,29 @@ public class Controller {
                 properties.getProperty("redis-password").toCharArray());
 
         MineCloud.instance().initiateMongo(mongo);
+        MineCloud.instance().mongo().ensureIndexes();
         MineCloud.instance().initiateRedis(redis);
 
-        new Controller();
+        new Controller(properties);
+    }
+
+    /**
+     * Picks the scaling policy from the scaling-policy property, either static (default) or predictive
+     */
+    private static ScalingPolicy scalingPolicy(Properties properties) {
+        String policy = properties.getProperty("scaling-policy", "static");
+
+        switch (policy.toLowerCase()) {
+            case "static":
+                return StaticScalingPolicy.create();
+            case "predictive":
+                return PredictiveScalingPolicy.create(
+                        Double.parseDouble(properties.getProperty("scaling-alpha", "0.5")),
+                        Double.parseDouble(properties.getProperty("scaling-beta", "0.3")),
+                        Long.parseLong(properties.getProperty("scaling-down-delay", "120000")));
+            default:
+                throw new MineCloudException("Unknown scaling policy " + policy);
+        }
     }
 
     public static Controller instance() {
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.controller;
+
+import io.minecloud.controller.NetworkSnapshot.ServerState;
+import io.minecloud.models.network.Network;
+import io.minecloud.models.network.server.ServerNetworkMetadata;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a running estimate of the players on each server type between reconciliations,
+ * so player deltas can wake the controller as soon as a type crosses its scaling threshold.
+ */
+final class LoadTracker {
+    private final double threshold;
+    private volatile Map<String, Load> loads = Collections.emptyMap();
+
+    LoadTracker(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Replaces the estimates with the state the controller just reconciled against
+     */
+    void reset(Collection<Network> networks, NetworkSnapshot snapshot) {
+        Map<String, Load> loads = new HashMap<>();
+
+        for (Network network : networks) {
+            if (network.serverMetadata() == null) {
+                continue;
+            }
+
+            List<ServerState> servers = snapshot.servers(network.name());
+
+            for (ServerNetworkMetadata metadata : network.serverMetadata()) {
+                String type = metadata.type().name();
+                int online = 0;
+                int players = 0;
+
+                for (ServerState server : servers) {
+                    if (server.type().equals(type) && !server.isStandby()) {
+                        online++;
+                        players += server.players();
+                    }
+                }
+
+                loads.put(key(network.name(), type), new Load(metadata.type().maxPlayers() * online, players));
+            }
+        }
+
+        this.loads = loads;
+    }
+
+    /**
+     * Applies a change in players to the estimate of a server type
+     *
+     * @return true if the change took the type over its threshold
+     */
+    boolean playersChanged(String network, String type, int delta) {
+        Load load = loads.get(key(network, type));
+
+        if (load == null) {
+            return false;
+        }
+
+        int players = load.players.addAndGet(delta);
+        double limit = load.capacity * threshold;
+
+        return delta > 0 && players > limit && players - delta <= limit;
+    }
+
+    private static String key(String network, String type) {
+        return network + ":" + type;
+    }
+
+    private static final class Load {
+        private final int capacity;
+        private final AtomicInteger players;
+
+        private Load(int capacity, int players) {
+            this.capacity = capacity;
+            this.players = new AtomicInteger(players);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.controller;
+
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import io.minecloud.db.mongo.AbstractMongoRepository;
+import io.minecloud.db.mongo.MongoDatabase;
+import io.minecloud.models.bungee.Bungee;
+import io.minecloud.models.external.ExternalServer;
+import io.minecloud.models.server.LiveStateRegistry;
+import io.minecloud.models.server.Server;
+import io.minecloud.models.server.ServerRepository;
+import io.minecloud.models.server.ServerSummary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of every network's servers, bungees and external servers, read with one
+ * aggregation per collection at the start of a controller tick. The RAM usage and player
+ * counts of servers come from the live state in Redis where the servers are reporting.
+ */
+public final class NetworkSnapshot {
+    private static final AggregationOptions OPTIONS = AggregationOptions.builder()
+            .outputMode(AggregationOptions.OutputMode.CURSOR)
+            .build();
+
+    private final Map<String, List<ServerState>> servers = new HashMap<>();
+    private final Map<String, Integer> bungees = new HashMap<>();
+    private final Map<String, Integer> externalServers = new HashMap<>();
+
+    private NetworkSnapshot() {
+    }
+
+    public static NetworkSnapshot capture(MongoDatabase mongo, LiveStateRegistry liveStates) {
+        NetworkSnapshot snapshot = new NetworkSnapshot();
+
+        snapshot.captureServers(mongo.repositoryBy(Server.class), liveStates);
+        snapshot.captureCounts(mongo.repositoryBy(Bungee.class).collection(), snapshot.bungees);
+        snapshot.captureCounts(mongo.repositoryBy(ExternalServer.class).collection(), snapshot.externalServers);
+
+        return snapshot;
+    }
+
+    private void captureServers(ServerRepository repository, LiveStateRegistry liveStates) {
+        for (ServerSummary summary : liveStates.overlay(repository.summaries(repository.createQuery()))) {
+            ServerState state = new ServerState(summary.name(), summary.type(), summary.port(), summary.ramUsage(),
+                    summary.joinable(), summary.standby(), summary.players());
+
+            servers.computeIfAbsent(summary.network(), (k) -> new ArrayList<>()).add(state);
+        }
+    }
+
+    private void captureCounts(DBCollection collection, Map<String, Integer> counts) {
+        DBObject group = new BasicDBObject("_id", new BasicDBObject("network", "$network").append("type", "$type"))
+                .append("count", new BasicDBObject("$sum", 1));
+        Cursor cursor = collection.aggregate(Collections.singletonList(new BasicDBObject("$group", group)), OPTIONS);
+
+        try {
+            while (cursor.hasNext()) {
+                DBObject object = cursor.next();
+                DBObject id = (DBObject) object.get("_id");
+
+                counts.put(key(AbstractMongoRepository.idOf(id.get("network")), AbstractMongoRepository.idOf(id.get("type"))),
+                        intOf(object.get("count")));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public List<ServerState> servers(String network) {
+        return servers.getOrDefault(network, Collections.emptyList());
+    }
+
+    public int bungees(String network, String type) {
+        return bungees.getOrDefault(key(network, type), 0);
+    }
+
+    public boolean isExternalServerOnline(String network, String type) {
+        return externalServers.getOrDefault(key(network, type), 0) > 0;
+    }
+
+    private static String key(String network, String type) {
+        return network + ":" + type;
+    }
+
+    private static int intOf(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : -1;
+    }
+
+    /**
+     * The fields of a server the controller needs to make scaling decisions
+     */
+    public static final class ServerState {
+        private final String name;
+        private final String type;
+        private final int port;
+        private final int ramUsage;
+        private final boolean joinable;
+        private final boolean standby;
+        private final int players;
+
+        ServerState(String name, String type, int port, int ramUsage, boolean joinable, boolean standby,
+                    int players) {
+            this.name = name;
+            this.type = type;
+            this.port = port;
+            this.ramUsage = ramUsage;
+            this.joinable = joinable;
+            this.standby = standby;
+            this.players = players;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public String type() {
+            return type;
+        }
+
+        public int port() {
+            return port;
+        }
+
+        public int ramUsage() {
+            return ramUsage;
+        }
+
+        public boolean isJoinable() {
+            return joinable && !standby;
+        }
+
+        public boolean isStandby() {
+            return standby;
+        }
+
+        /**
+         * @return true once the server has booted and reported its statistics
+         */
+        public boolean isReady() {
+            return port != -1 && ramUsage != -1;
+        }
+
+        public int players() {
+            return players;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.controller;
+
+import io.minecloud.controller.NetworkSnapshot.ServerState;
+import io.minecloud.controller.scaling.ScalingPolicy;
+import io.minecloud.models.external.ExternalServerType;
+import io.minecloud.models.network.Network;
+import io.minecloud.models.network.server.ServerNetworkMetadata;
+import io.minecloud.models.server.type.ServerType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the desired state of each network against a {@link NetworkSnapshot} and
+ * decides which servers and bungees have to be deployed or removed. No database
+ * access happens here beyond resolving the network's own type references.
+ */
+public final class ReconciliationEngine {
+    private final ScalingPolicy policy;
+
+    public ReconciliationEngine(ScalingPolicy policy) {
+        this.policy = policy;
+    }
+
+    public ActionPlan plan(Collection<Network> networks, NetworkSnapshot snapshot) {
+        ActionPlan plan = new ActionPlan();
+
+        for (Network network : networks) {
+            planNetwork(network, snapshot, plan);
+        }
+
+        policy.evaluated();
+        return plan;
+    }
+
+    private void planNetwork(Network network, NetworkSnapshot snapshot, ActionPlan plan) {
+        //Ensure bungees are deployed
+        network.bungeeMetadata().forEach((type, amount) -> {
+            int difference = amount - snapshot.bungees(network.name(), type.name());
+
+            for (int i = 0; i < difference; i++) {
+                plan.deployBungee(network, type);
+            }
+        });
+
+        List<ServerNetworkMetadata> metadata = network.serverMetadata() == null ?
+                new ArrayList<>() : network.serverMetadata();
+        Set<String> types = metadata.stream()
+                .map((data) -> data.type().name())
+                .collect(Collectors.toCollection(HashSet::new));
+        List<ServerState> servers = new ArrayList<>();
+
+        //Remove invalid servers and servers of types no longer on the network
+        for (ServerState server : snapshot.servers(network.name())) {
+            if ((server.ramUsage() != -1 && server.port() == -1) || !types.contains(server.type())) {
+                plan.removeServer(server.name());
+            } else {
+                servers.add(server);
+            }
+        }
+
+        //Check external servers
+        if (network.externalServerTypes() != null) {
+            for (ExternalServerType type : network.externalServerTypes()) {
+                if (!snapshot.isExternalServerOnline(network.name(), type.name())) {
+                    plan.setupExternalServer(network, type);
+                }
+            }
+        }
+
+        for (ServerNetworkMetadata data : metadata) {
+            List<ServerState> typeServers = servers.stream()
+                    .filter((server) -> server.type().equals(data.type().name()))
+                    .collect(Collectors.toList());
+
+            planServerType(network, data, typeServers, plan);
+        }
+    }
+
+    private void planServerType(Network network, ServerNetworkMetadata metadata, List<ServerState> typeServers,
+                                ActionPlan plan) {
+        ServerType type = metadata.type();
+        List<ServerState> servers = new ArrayList<>();
+        List<ServerState> standby = new ArrayList<>();
+
+        typeServers.forEach((server) -> (server.isStandby() ? standby : servers).add(server));
+
+        int serversOnline = servers.size();
+        int change = policy.scale(network, metadata, servers);
+        //Room left under the maximum server count, standby servers included
+        int room = metadata.maximumAmount() - serversOnline - standby.size();
+
+        if (change > 0) {
+            List<ServerState> ready = standby.stream()
+                    .filter(ServerState::isReady)
+                    .collect(Collectors.toList());
+
+            //Promote parked servers first, they are joinable straight away
+            for (ServerState server : ready) {
+                if (change == 0) {
+                    break;
+                }
+
+                plan.promoteServer(server.name(), network, metadata);
+                standby.remove(server);
+                change--;
+            }
+
+            //Don't go over the maximum server count
+            change = Math.min(change, room);
+
+            for (int i = 0; i < change; i++) {
+                plan.deployServer(network, type);
+            }
+
+            room -= Math.max(0, change);
+        } else {
+            //Remove empty servers, making sure we don't go below the minimum amount
+            for (ServerState server : servers) {
+                if (change >= 0 || serversOnline <= metadata.minimumAmount()) {
+                    break;
+                }
+
+                //Servers still starting have no players yet, leave them be
+                if (server.players() == 0 && server.ramUsage() != -1) {
+                    plan.removeServer(server.name());
+                    serversOnline--;
+                    change++;
+                }
+            }
+        }
+
+        //Keep the warm pool at its configured size
+        int missing = metadata.warmPool() - standby.size();
+
+        for (int i = 0; i < Math.min(missing, room); i++) {
+            plan.deployStandbyServer(network, type);
+        }
+
+        for (int i = 0; i < -missing; i++) {
+            plan.removeServer(standby.get(i).name());
+        }
+    }
+}
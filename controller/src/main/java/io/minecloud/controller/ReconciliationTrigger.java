@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.controller;
+
+/**
+ * Wakes the controller loop when a reconciliation is requested. Requests arriving
+ * close together are coalesced: the loop runs once the requests have been quiet
+ * for {@code quietPeriod}, or {@code maxDelay} after the first one at the latest.
+ */
+final class ReconciliationTrigger {
+    private final long quietPeriod;
+    private final long maxDelay;
+    private long firstRequest = -1;
+    private long lastRequest = -1;
+
+    ReconciliationTrigger(long quietPeriod, long maxDelay) {
+        this.quietPeriod = quietPeriod;
+        this.maxDelay = maxDelay;
+    }
+
+    synchronized void request() {
+        long now = System.currentTimeMillis();
+
+        if (firstRequest == -1) {
+            firstRequest = now;
+        }
+
+        lastRequest = now;
+        notifyAll();
+    }
+
+    /**
+     * Blocks until a debounced request is due or {@code timeout} milliseconds have passed
+     * without any request, whichever comes first.
+     */
+    synchronized void await(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        while (true) {
+            long now = System.currentTimeMillis();
+            long due = firstRequest == -1 ? deadline : Math.min(lastRequest + quietPeriod, firstRequest + maxDelay);
+
+            if (now >= due) {
+                break;
+            }
+
+            wait(due - now);
+        }
+
+        firstRequest = -1;
+        lastRequest = -1;
+    }
+}
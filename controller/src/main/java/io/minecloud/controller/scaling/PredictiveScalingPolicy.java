@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.controller.scaling;
+
+import io.minecloud.controller.NetworkSnapshot.ServerState;
+import io.minecloud.models.network.Network;
+import io.minecloud.models.network.server.ServerNetworkMetadata;
+import io.minecloud.models.server.type.ServerRole;
+import io.minecloud.models.server.type.ServerType;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Scales on where load is heading rather than where it is. Every evaluation feeds the
+ * current load of a type into Holt's linear smoothing (a level and a trend), and servers
+ * are sized for the load forecast {@link ServerType#timeOut()} seconds ahead, which is
+ * roughly how long a server deployed now takes to come up.
+ * </p>
+ * <p>
+ * Load is the players online for lobbies and the servers no longer joinable for game
+ * types. Scaling up happens as soon as the forecast needs it; scaling down only when the
+ * forecast fits in fewer servers at a lower utilization, and has done so for a while.
+ * Servers are removed one at a time.
+ * </p>
+ */
+public final class PredictiveScalingPolicy implements ScalingPolicy {
+    private final Map<String, Forecast> forecasts = new HashMap<>();
+    private final Set<String> evaluated = new HashSet<>();
+    private final double alpha;
+    private final double beta;
+    private final double upperUtilization;
+    private final double lowerUtilization;
+    private final long scaleDownDelay;
+
+    private PredictiveScalingPolicy(double alpha, double beta, double upperUtilization, double lowerUtilization,
+                                    long scaleDownDelay) {
+        this.alpha = alpha;
+        this.beta = beta;
+        this.upperUtilization = upperUtilization;
+        this.lowerUtilization = lowerUtilization;
+        this.scaleDownDelay = scaleDownDelay;
+    }
+
+    /**
+     * @param alpha smoothing factor of the load level, between 0 and 1
+     * @param beta smoothing factor of the load trend, between 0 and 1
+     * @param scaleDownDelay how long in milliseconds the load has to stay low before a server is removed
+     */
+    public static PredictiveScalingPolicy create(double alpha, double beta, long scaleDownDelay) {
+        return new PredictiveScalingPolicy(alpha, beta, 0.75, 0.5, scaleDownDelay);
+    }
+
+    @Override
+    public int scale(Network network, ServerNetworkMetadata metadata, List<ServerState> servers) {
+        ServerType type = metadata.type();
+        String key = network.name() + ":" + type.name();
+        Forecast forecast = forecasts.computeIfAbsent(key, (k) -> new Forecast());
+        long now = System.currentTimeMillis();
+        int serversOnline = servers.size();
+        int wanted;
+        int sufficient;
+
+        evaluated.add(key);
+
+        if (type.serverRole() == ServerRole.LOBBY) {
+            int players = servers.stream().mapToInt(ServerState::players).sum();
+            double expected = Math.max(players, forecast.update(players, now).predict(type.timeOut()));
+
+            wanted = Math.max(metadata.minimumAmount(), serversFor(expected, type.maxPlayers(), upperUtilization));
+            sufficient = Math.max(metadata.minimumAmount(), serversFor(expected, type.maxPlayers(), lowerUtilization));
+        } else if (type.serverRole() == ServerRole.GAME) {
+            int busy = (int) servers.stream().filter((server) -> !server.isJoinable()).count();
+            double expected = Math.max(busy, forecast.update(busy, now).predict(type.timeOut()));
+
+            //Keep the minimum amount joinable on top of the games we expect to be running
+            wanted = (int) Math.ceil(expected) + metadata.minimumAmount();
+            sufficient = wanted;
+        } else {
+            return 0;
+        }
+
+        if (wanted > serversOnline) {
+            forecast.lowSince = -1;
+            return wanted - serversOnline;
+        }
+
+        if (sufficient >= serversOnline) {
+            forecast.lowSince = -1;
+            return 0;
+        }
+
+        if (forecast.lowSince == -1) {
+            forecast.lowSince = now;
+        }
+
+        if (now - forecast.lowSince < scaleDownDelay) {
+            return 0;
+        }
+
+        //Start waiting again so servers are removed one at a time
+        forecast.lowSince = now;
+        return -1;
+    }
+
+    /**
+     * Forgets the forecasts of types which were removed from their network, or whose network is gone
+     */
+    @Override
+    public void evaluated() {
+        forecasts.keySet().retainAll(evaluated);
+        evaluated.clear();
+    }
+
+    private static int serversFor(double players, int maxPlayers, double utilization) {
+        if (maxPlayers <= 0) {
+            return 0;
+        }
+
+        return (int) Math.ceil(players / (maxPlayers * utilization));
+    }
+
+    private final class Forecast {
+        private double level;
+        private double trend; // change in load per second
+        private long lastUpdate = -1;
+        private long lowSince = -1;
+
+        Forecast update(int load, long now) {
+            if (lastUpdate == -1) {
+                level = load;
+                trend = 0;
+                lastUpdate = now;
+                return this;
+            }
+
+            double elapsed = (now - lastUpdate) / 1000D;
+
+            if (elapsed <= 0) {
+                return this;
+            }
+
+            double previousLevel = level;
+
+            level = alpha * load + (1 - alpha) * (level + trend * elapsed);
+            trend = beta * ((level - previousLevel) / elapsed) + (1 - beta) * trend;
+            lastUpdate = now;
+            return this;
+        }
+
+        double predict(int seconds) {
+            return Math.max(0, level + trend * seconds);
+        }
+    }
+}
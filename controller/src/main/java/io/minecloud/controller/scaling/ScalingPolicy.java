@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.controller.scaling;
+
+import io.minecloud.controller.NetworkSnapshot.ServerState;
+import io.minecloud.models.network.Network;
+import io.minecloud.models.network.server.ServerNetworkMetadata;
+
+import java.util.List;
+
+/**
+ * Decides how many servers of a type a network should gain or lose. The controller
+ * clamps the result to the type's maximum amount, and only ever removes empty servers
+ * without going below the minimum amount.
+ */
+public interface ScalingPolicy {
+    /**
+     * @param servers the servers of the type currently on the network
+     * @return the amount of servers to deploy, or a negative amount of empty servers to remove
+     */
+    public int scale(Network network, ServerNetworkMetadata metadata, List<ServerState> servers);
+
+    /**
+     * Called once every network was planned, types which weren't scaled since are gone
+     */
+    public default void evaluated() {
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.controller.scaling;
+
+import io.minecloud.controller.NetworkSnapshot.ServerState;
+import io.minecloud.models.network.Network;
+import io.minecloud.models.network.server.ServerNetworkMetadata;
+import io.minecloud.models.server.type.ServerRole;
+import io.minecloud.models.server.type.ServerType;
+
+import java.util.List;
+
+/**
+ * Scales on the current state only: lobbies get more servers once they are over 75% of
+ * their capacity, game types keep their minimum amount of joinable servers, and empty
+ * default servers above the minimum are removed.
+ */
+public final class StaticScalingPolicy implements ScalingPolicy {
+
+    private StaticScalingPolicy() {
+    }
+
+    public static StaticScalingPolicy create() {
+        return new StaticScalingPolicy();
+    }
+
+    @Override
+    public int scale(Network network, ServerNetworkMetadata metadata, List<ServerState> servers) {
+        ServerType type = metadata.type();
+        int serversOnline = servers.size();
+        int neededServers = 0;
+
+        //Calculate needed servers from players online
+        if (type.serverRole() == ServerRole.LOBBY) {
+            int space = type.maxPlayers() * serversOnline;
+            int onlinePlayers = servers.stream().mapToInt(ServerState::players).sum();
+            //If we are at > 75% of current capacity, launch more servers
+            int scaledServers = space > 0 && onlinePlayers > (space * 0.75) ?
+                    (int) Math.floor(onlinePlayers / (space * 0.75)) + 1 : 0;
+            int requiredServers = Math.max(0, metadata.minimumAmount() - serversOnline);
+
+            neededServers = requiredServers + scaledServers;
+        //Or from the amount of servers that are available for play
+        } else if (type.serverRole() == ServerRole.GAME) {
+            int availableServers = (int) servers.stream().filter(ServerState::isJoinable).count();
+            //No servers available? Launch one!
+            neededServers = Math.max(0, metadata.minimumAmount() - availableServers);
+        }
+
+        if (neededServers > 0) {
+            return neededServers;
+        }
+
+        //Remove empty default servers above the minimum amount
+        if (type.defaultServer() && serversOnline > metadata.minimumAmount()) {
+            return metadata.minimumAmount() - serversOnline;
+        }
+
+        return 0;
+    }
+}
@@ -15,16 +15,24 @@
  */
 package io.minecloud;
 
-import java.io.IOException;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
+import org.mongodb.morphia.query.Query;
+
+import io.minecloud.db.mongo.AbstractMongoRepository;
+import io.minecloud.db.mongo.model.MongoEntity;
 import io.minecloud.db.redis.RedisDatabase;
-import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+import io.minecloud.db.redis.msg.schema.KickMessage;
+import io.minecloud.db.redis.msg.schema.PartyJoinMessage;
 import io.minecloud.db.redis.pubsub.SimpleRedisChannel;
 import io.minecloud.models.external.ExternalServer;
 import io.minecloud.models.external.ExternalServerRepository;
 import io.minecloud.models.player.PlayerData;
+import io.minecloud.models.player.PlayerLocation;
+import io.minecloud.models.player.PlayerRegistry;
 import io.minecloud.models.server.Server;
 import io.minecloud.models.server.ServerRepository;
 
@@ -42,16 +50,17 @@ public class CardinalAPI {
      */
     public static Server getServerPlayerIsOn(String username) {
         ServerRepository repository = MineCloud.instance().mongo().repositoryBy(Server.class);
-        List<Server> servers = repository.find(repository.createQuery()
-                .field("port").notEqual(-1)
-                .field("ramUsage").notEqual(-1))
-                .asList();
-        for (Server server : servers) {
-            if (server.playerBy(username) != null) {
+        PlayerLocation location = locationOf(null, username);
+
+        if (location != null) {
+            Server server = repository.findFirst(location.server());
+
+            if (server != null && server.playerBy(username) != null) {
                 return server;
             }
         }
-        return null;
+
+        return findByName(repository, () -> onlineServers(repository), username);
     }
     
     /**
@@ -61,13 +70,8 @@ public class CardinalAPI {
      */
     public static ExternalServer getExternalServerPlayerIsOn(String username) {
         ExternalServerRepository repository = MineCloud.instance().mongo().repositoryBy(ExternalServer.class);
-        List<ExternalServer> servers = repository.find().asList();
-        for (ExternalServer server : servers) {
-            if (server.playerBy(username) != null) {
-                return server;
-            }
-        }
-        return null;
+
+        return findByName(repository, repository::createQuery, username);
     }
     
     /**
@@ -89,39 +93,83 @@ public class CardinalAPI {
     }
     
     private static PlayerData getPlayerInternal(UUID uuid, String username) {
-        //First search on dynamic servers
+        //First look up where the registry last saw the player
         ServerRepository repository = MineCloud.instance().mongo().repositoryBy(Server.class);
-        List<Server> servers = repository.find(repository.createQuery()
-                .field("port").notEqual(-1)
-                .field("ramUsage").notEqual(-1))
-                .asList();
-        for (Server server : servers) {
-            PlayerData data;
-            if (uuid != null) {
-                data = server.playerBy(uuid);
-            } else {
-                data = server.playerBy(username);
-            }
+        PlayerLocation location = locationOf(uuid, username);
+
+        if (location != null) {
+            PlayerData data = playerOn(repository.findFirst(location.server()), uuid, username);
+
             if (data != null) {
                 return data;
             }
         }
+
+        //Then fall back to querying dynamic servers
+        Server found = uuid != null
+                ? repository.find(onlineServers(repository).field("onlinePlayers.id").equal(uuid.toString())).get()
+                : findByName(repository, () -> onlineServers(repository), username);
+        PlayerData data = playerOn(found, uuid, username);
+
+        if (data != null) {
+            return data;
+        }
         
         //Then on external servers
         ExternalServerRepository exRepo = MineCloud.instance().mongo().repositoryBy(ExternalServer.class);
-        List<ExternalServer> exServers = exRepo.find().asList();
-        for (ExternalServer server : exServers) {
-            PlayerData data;
-            if (uuid != null) {
-                data = server.playerBy(uuid);
-            } else {
-                data = server.playerBy(username);
-            }
-            if (data != null) {
-                return data;
-            }
+        ExternalServer server = uuid != null
+                ? exRepo.find(exRepo.createQuery().field("onlinePlayers.id").equal(uuid.toString())).get()
+                : findByName(exRepo, exRepo::createQuery, username);
+
+        if (server == null) {
+            return null;
+        }
+
+        return uuid != null ? server.playerBy(uuid) : server.playerBy(username);
+    }
+
+    private static PlayerLocation locationOf(UUID uuid, String username) {
+        PlayerRegistry registry = MineCloud.instance().playerRegistry();
+
+        if (registry == null) {
+            return null;
+        }
+
+        return uuid != null ? registry.locationOf(uuid) : registry.locationOf(username);
+    }
+
+    private static PlayerData playerOn(Server server, UUID uuid, String username) {
+        if (server == null) {
+            return null;
         }
-        return null;
+
+        return uuid != null ? server.playerBy(uuid) : server.playerBy(username);
+    }
+
+    private static Query<Server> onlineServers(ServerRepository repository) {
+        return repository.createQuery()
+                .field("port").notEqual(-1)
+                .field("ramUsage").notEqual(-1);
+    }
+
+    /**
+     * Finds the player by their exact name first, which the onlinePlayers.name index answers
+     * directly. Only a name in another case falls back to the anchored case insensitive
+     * pattern, which Mongo can't bound to a range of the index.
+     */
+    private static <T extends MongoEntity> T findByName(AbstractMongoRepository<T> repository,
+                                                        Supplier<Query<T>> query, String username) {
+        T found = repository.find(query.get().field("onlinePlayers.name").equal(username)).get();
+
+        if (found != null) {
+            return found;
+        }
+
+        return repository.find(query.get().field("onlinePlayers.name").equal(namePattern(username))).get();
+    }
+
+    private static Pattern namePattern(String username) {
+        return Pattern.compile("^" + Pattern.quote(username) + "$", Pattern.CASE_INSENSITIVE);
     }
     
     /**
@@ -136,14 +184,8 @@ public class CardinalAPI {
             redis.addChannel(SimpleRedisChannel.create("cardinal", redis));
         }
 
-        try (MessageOutputStream mos = new MessageOutputStream()) {
-            mos.writeString("kick");
-            mos.writeString(uuid.toString());
-            mos.writeString(reasonMessage);
-            redis.channelBy("cardinal").publish(mos.toMessage());
-        } catch (IOException ex) {
-            throw new MineCloudException("Could not encode kick message", ex);
-        }
+        redis.channelBy("cardinal").publish(redis.codec().encode(KickMessage.SCHEMA,
+                KickMessage.create(uuid, reasonMessage)));
     }
     
     /**
@@ -158,17 +200,8 @@ public class CardinalAPI {
             redis.addChannel(SimpleRedisChannel.create("cardinal", redis));
         }
 
-        try (MessageOutputStream mos = new MessageOutputStream()) {
-            mos.writeString("partyjoin");
-            mos.writeString(server);
-            mos.writeVarInt32(players.size());
-            for (UUID player : players) {
-                mos.writeString(player.toString());
-            }
-            redis.channelBy("cardinal").publish(mos.toMessage());
-        } catch (IOException ex) {
-            throw new MineCloudException("Could not encode kick message", ex);
-        }
+        redis.channelBy("cardinal").publish(redis.codec().encode(PartyJoinMessage.SCHEMA,
+                PartyJoinMessage.create(server, players)));
     }
 
 }
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud;
+
+import io.minecloud.models.bungee.type.BungeeType;
+import io.minecloud.models.plugins.Plugin;
+import io.minecloud.models.server.World;
+import io.minecloud.models.server.type.ServerType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * <p>
+ * A node-local copy of the plugins, configs and worlds on the shared /mnt/minecloud mount.
+ * Entries are keyed by a hash of what they hold (a plugin's name and version, a config's
+ * name, a world's name and version) and filled in by the daemon ahead of servers starting.
+ * </p>
+ * <p>
+ * Servers only ever read from the cache: when an entry isn't there yet the path on the
+ * mount is handed out instead, so a cold cache costs nothing more than before.
+ * </p>
+ * <p>
+ * Eviction only removes unreferenced entries: those not being fetched, not pinned by this
+ * process through {@link #pin(ServerType)}, and not read by any process for
+ * {@link #IN_USE_GRACE} ms, which covers servers still copying what they resolved.
+ * </p>
+ */
+public final class ContentCache {
+    public static final String MOUNT = "/mnt/minecloud";
+    public static final long IN_USE_GRACE = 10 * 60_000L;
+    private static final String MARKER = ".complete";
+    private static final String CONTENT = "content";
+    private static ContentCache local;
+
+    private final Path root;
+    private final Map<String, Object> fetching = new ConcurrentHashMap<>();
+    // guarded by itself, eviction checks and claims entries holding it
+    private final Map<String, Integer> pins = new HashMap<>();
+
+    private ContentCache(Path root) {
+        this.root = root;
+    }
+
+    public static ContentCache create(Path root) {
+        return new ContentCache(root);
+    }
+
+    /**
+     * The cache of this node, found at the content_cache environment variable or
+     * /var/cache/minecloud/content by default
+     */
+    public static ContentCache local() {
+        if (local == null) {
+            String root = System.getenv("content_cache");
+
+            local = create(Paths.get(root == null ? "/var/cache/minecloud/content" : root));
+        }
+
+        return local;
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    public File plugin(String name, String version) {
+        return resolve("plugins/" + name + "/" + version);
+    }
+
+    public File config(String name, String config) {
+        return resolve("configs/" + name + "/" + config);
+    }
+
+    public File world(String name, String version) {
+        return resolve("worlds/" + name + "/" + version);
+    }
+
+    /**
+     * Copies everything servers of the type load from the mount into the cache
+     */
+    public void fetch(ServerType type) throws IOException {
+        for (String relative : contentsOf(type)) {
+            fetch(relative);
+        }
+    }
+
+    /**
+     * Copies everything bungees of the type load from the mount into the cache
+     */
+    public void fetch(BungeeType type) throws IOException {
+        for (String relative : contentsOf(type.plugins())) {
+            fetch(relative);
+        }
+    }
+
+    /**
+     * Keeps everything servers of the type load from being evicted until the pin is closed
+     */
+    public Pin pin(ServerType type) {
+        return pin(contentsOf(type));
+    }
+
+    private Pin pin(List<String> relatives) {
+        List<String> keys = new ArrayList<>();
+
+        relatives.forEach((relative) -> keys.add(keyOf(relative)));
+
+        synchronized (pins) {
+            keys.forEach((key) -> pins.merge(key, 1, Integer::sum));
+        }
+
+        return new Pin(keys);
+    }
+
+    private static List<String> contentsOf(ServerType type) {
+        List<World> worlds = new ArrayList<>(type.worlds());
+        List<String> relatives = new ArrayList<>();
+
+        if (type.defaultWorld() != null) {
+            worlds.add(type.defaultWorld());
+        }
+
+        for (World world : worlds) {
+            relatives.add("worlds/" + world.name() + "/" + world.version());
+        }
+
+        relatives.addAll(contentsOf(type.plugins()));
+        return relatives;
+    }
+
+    private static List<String> contentsOf(List<Plugin> plugins) {
+        List<String> relatives = new ArrayList<>();
+
+        for (Plugin plugin : plugins) {
+            String name = plugin.type().name();
+
+            relatives.add("plugins/" + name + "/" + plugin.version());
+            relatives.add("configs/" + name + "/" + (plugin.config() == null ? plugin.version() : plugin.config()));
+        }
+
+        return relatives;
+    }
+
+    /**
+     * Removes the least recently used unreferenced entries until the cache is under the
+     * given size. An entry is renamed out of the way while nothing can pin or fetch it, and
+     * deleted after.
+     */
+    public void evict(long maxBytes) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        List<Path> entries = new ArrayList<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        long total = 0;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (Path entry : stream) {
+                Path marker = entry.resolve(MARKER);
+
+                if (!Files.exists(marker)) {
+                    continue;
+                }
+
+                long size = Long.parseLong(new String(Files.readAllBytes(marker), StandardCharsets.UTF_8)
+                        .split("\n")[1].trim());
+
+                entries.add(entry);
+                sizes.put(entry, size);
+                total += size;
+            }
+        }
+
+        entries.sort(Comparator.comparingLong((entry) -> entry.resolve(MARKER).toFile().lastModified()));
+
+        for (Path entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+
+            String key = entry.getFileName().toString();
+            Path evicted = root.resolve(key + ".evicted-" + System.nanoTime());
+
+            synchronized (pins) {
+                if (pins.containsKey(key) || fetching.containsKey(key)
+                        || System.currentTimeMillis() - entry.resolve(MARKER).toFile().lastModified() < IN_USE_GRACE) {
+                    continue;
+                }
+
+                Files.move(entry, evicted, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            deleteTree(evicted);
+            total -= sizes.get(entry);
+            MineCloud.logger().info("Evicted " + key + " from the content cache");
+        }
+    }
+
+    /**
+     * Copies a directory of the mount into the cache if it isn't there already. The copy
+     * is made next to the entry and renamed into place, so readers never see half of it.
+     */
+    public File fetch(String relative) throws IOException {
+        Path source = Paths.get(MOUNT, relative);
+        String key = keyOf(relative);
+        Path entry = root.resolve(key);
+
+        if (Files.exists(entry.resolve(MARKER)) || !Files.isDirectory(source)) {
+            return resolve(relative);
+        }
+
+        synchronized (fetching.computeIfAbsent(key, (k) -> new Object())) {
+            try (Pin pin = pin(Collections.singletonList(relative))) {
+                if (Files.exists(entry.resolve(MARKER))) {
+                    return resolve(relative);
+                }
+
+                Path temporary = root.resolve(key + ".tmp-" + System.nanoTime());
+
+                try {
+                    long size = copyTree(source, temporary.resolve(CONTENT));
+
+                    Files.write(temporary.resolve(MARKER), (relative + "\n" + size + "\n").getBytes(StandardCharsets.UTF_8));
+
+                    if (Files.exists(entry)) {
+                        deleteTree(entry);
+                    }
+
+                    Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+                    MineCloud.logger().info("Cached " + relative + " (" + (size / 1024) + " KB)");
+                } finally {
+                    if (Files.exists(temporary)) {
+                        deleteTree(temporary);
+                    }
+                }
+            } finally {
+                fetching.remove(key);
+            }
+        }
+
+        return resolve(relative);
+    }
+
+    private File resolve(String relative) {
+        Path entry = root.resolve(keyOf(relative));
+        Path marker = entry.resolve(MARKER);
+
+        if (!Files.exists(marker)) {
+            return new File(MOUNT, relative);
+        }
+
+        try {
+            Files.setLastModifiedTime(marker, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ex) {
+            MineCloud.logger().log(Level.FINE, "Unable to touch " + marker, ex);
+        }
+
+        return entry.resolve(CONTENT).toFile();
+    }
+
+    private static String keyOf(String relative) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder builder = new StringBuilder();
+
+            for (byte b : digest.digest(relative.getBytes(StandardCharsets.UTF_8))) {
+                builder.append(String.format("%02x", b));
+            }
+
+            return builder.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new MineCloudException(ex);
+        }
+    }
+
+    private static long copyTree(Path source, Path target) throws IOException {
+        long[] size = {0};
+
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, target.resolve(source.relativize(file).toString()),
+                        StandardCopyOption.COPY_ATTRIBUTES);
+                size[0] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return size[0];
+    }
+
+    private static void deleteTree(Path path) throws IOException {
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Keeps entries from being evicted while something of this process reads them
+     */
+    public final class Pin implements AutoCloseable {
+        private final List<String> keys;
+        private boolean closed;
+
+        private Pin(List<String> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public void close() {
+            synchronized (pins) {
+                if (closed) {
+                    return;
+                }
+
+                closed = true;
+                keys.forEach((key) -> pins.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null));
+            }
+        }
+    }
+}
@@ -15,9 +15,15 @@
  */
 package io.minecloud;
 
+import com.mongodb.util.JSON;
 import io.minecloud.db.Credentials;
 import io.minecloud.db.mongo.MongoDatabase;
+import io.minecloud.db.mongo.QueryRecorder;
 import io.minecloud.db.redis.RedisDatabase;
+import io.minecloud.db.redis.msg.MessageType;
+import io.minecloud.db.redis.msg.binary.MessageInputStream;
+import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+import io.minecloud.db.redis.pubsub.SimpleRedisChannel;
 import io.minecloud.models.bungee.Bungee;
 import io.minecloud.models.bungee.BungeeRepository;
 import io.minecloud.models.bungee.type.BungeeType;
@@ -32,14 +38,18 @@ import io.minecloud.models.nodes.Node;
 import io.minecloud.models.nodes.NodeRepository;
 import io.minecloud.models.nodes.type.NodeType;
 import io.minecloud.models.nodes.type.NodeTypeRepository;
+import io.minecloud.models.player.PlayerRegistry;
 import io.minecloud.models.plugins.PluginType;
 import io.minecloud.models.plugins.PluginTypeRepository;
+import io.minecloud.models.server.LiveStateRegistry;
 import io.minecloud.models.server.Server;
 import io.minecloud.models.server.ServerRepository;
 import io.minecloud.models.server.type.ServerType;
 import io.minecloud.models.server.type.ServerTypeRepository;
 import lombok.Setter;
 import org.mongodb.morphia.logging.SilentLogger;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -48,6 +58,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public final class MineCloud {
@@ -58,6 +69,8 @@ public final class MineCloud {
     private MongoDatabase mongo;
     @Setter
     private RedisDatabase redis;
+    private PlayerRegistry playerRegistry;
+    private LiveStateRegistry liveStates;
 
     private MineCloud() {}
 
@@ -160,6 +173,17 @@ public final class MineCloud {
         return redis;
     }
 
+    /**
+     * @return The player location registry, or null if Redis has not been initiated
+     */
+    public PlayerRegistry playerRegistry() {
+        return playerRegistry;
+    }
+
+    public LiveStateRegistry liveStates() {
+        return liveStates;
+    }
+
     public void initiateMongo(Credentials credentials) {
         mongo = MongoDatabase.createDatabase(credentials);
 
@@ -176,6 +200,8 @@ public final class MineCloud {
         //Cardinal
         mongo.loadRepository(ExternalServerRepository.create(mongo.datastore()), ExternalServer.class);
         mongo.loadRepository(ExternalServerTypeRepository.create(mongo.datastore()), ExternalServerType.class);
+        linkEntityCaches();
+        linkQueryRecorder();
 
         try {
             Class<?> cls = Class.forName("org.mongodb.morphia.query.QueryValidator");
@@ -197,5 +223,68 @@ public final class MineCloud {
         redis = RedisDatabase.create(credentials);
 
         redis.setup();
+        playerRegistry = PlayerRegistry.create(redis);
+        liveStates = LiveStateRegistry.create(redis);
+        linkEntityCaches();
+        linkQueryRecorder();
+    }
+
+    /**
+     * Broadcasts changes to cached entities on {@code entity-changed} so every process drops
+     * its copy, once both databases are there
+     */
+    private void linkEntityCaches() {
+        if (mongo == null || redis == null) {
+            return;
+        }
+
+        mongo.setChangeListener((collection, id) -> {
+            try (MessageOutputStream os = MessageOutputStream.pooled()) {
+                os.writeString(collection);
+                os.writeString(id);
+
+                redis.publish("entity-changed", os.toMessage());
+            } catch (IOException ex) {
+                logger().log(Level.WARNING, "Unable to publish a change to " + collection + " " + id, ex);
+            }
+        });
+
+        redis.addChannel(SimpleRedisChannel.create("entity-changed", redis)
+                .addCallback((message) -> {
+                    if (message.type() != MessageType.BINARY) {
+                        return;
+                    }
+
+                    MessageInputStream stream = message.contents();
+
+                    mongo.invalidate(stream.readString(), stream.readString());
+                }));
+    }
+
+    /**
+     * Adds the query shapes seen by this process to {@code query-shapes}, keyed by
+     * collection and fields, with a sample of each in {@code query-samples}
+     */
+    private void linkQueryRecorder() {
+        if (mongo == null || redis == null) {
+            return;
+        }
+
+        mongo.queries().setSink((shapes) -> {
+            try (Jedis jedis = redis.grabResource()) {
+                Pipeline pipeline = jedis.pipelined();
+
+                for (QueryRecorder.Shape shape : shapes) {
+                    String key = shape.collection() + "|" + shape.fields();
+
+                    pipeline.hincrBy("query-shapes", key, shape.count());
+                    pipeline.hset("query-samples", key, JSON.serialize(shape.sample()));
+                }
+
+                pipeline.sync();
+            } catch (Exception ex) {
+                logger().log(Level.WARNING, "Unable to record query shapes", ex);
+            }
+        });
     }
 }
@@ -16,15 +16,32 @@
 package io.minecloud.db.mongo;
 
 import com.mongodb.*;
+import io.minecloud.MineCloudException;
 import io.minecloud.db.mongo.model.MongoEntity;
 import org.mongodb.morphia.Datastore;
+import org.mongodb.morphia.Key;
 import org.mongodb.morphia.dao.BasicDAO;
+import org.mongodb.morphia.mapping.Mapper;
+import org.mongodb.morphia.query.Query;
+import org.mongodb.morphia.query.QueryResults;
 
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public abstract class AbstractMongoRepository<T extends MongoEntity> extends BasicDAO<T, String> implements MongoRepository<T> {
+    private static final AggregationOptions CURSOR = AggregationOptions.builder()
+            .outputMode(AggregationOptions.OutputMode.CURSOR)
+            .build();
+
     protected DBCollection collection;
+    private EntityCache<DBObject> cache;
+    MongoDatabase database;
 
     protected AbstractMongoRepository(Class<T> entity, Datastore datastore) {
         super(entity, datastore);
@@ -36,9 +53,124 @@ public abstract class AbstractMongoRepository<T extends MongoEntity> extends Bas
         return collection.getName();
     }
 
+    /**
+     * Caches lookups by id, for entities which only change when pushed from the CLI. The
+     * cache keeps the mapped document and every lookup gets its own entity, so callers
+     * may change what they're handed before saving it.
+     */
+    protected void enableCache(long ttl, TimeUnit unit, int maxSize) {
+        cache = EntityCache.create(ttl, unit, maxSize);
+    }
+
+    public boolean cached() {
+        return cache != null;
+    }
+
     @Override
     public T findFirst(String id) {
-        return findOne("_id", id);
+        if (cache == null) {
+            return findOne("_id", id);
+        }
+
+        T entity = cachedCopy(id);
+
+        if (entity == null) {
+            long generation = cache.generation();
+
+            entity = findOne("_id", id);
+
+            if (entity != null) {
+                cache.put(id, ds.getMapper().toDBObject(entity), generation);
+            }
+        }
+
+        return entity;
+    }
+
+    /**
+     * Looks the entity up on the Mongo executor, or completes right away when it is cached
+     */
+    public CompletableFuture<T> findFirstAsync(String id) {
+        if (cache != null) {
+            T entity = cachedCopy(id);
+
+            if (entity != null) {
+                return CompletableFuture.completedFuture(entity);
+            }
+        }
+
+        return async(() -> findFirst(id));
+    }
+
+    private T cachedCopy(String id) {
+        DBObject document = cache.get(id);
+
+        if (document == null) {
+            return null;
+        }
+
+        Mapper mapper = ds.getMapper();
+
+        return mapper.fromDBObject(getEntityClass(), document, mapper.createEntityCache());
+    }
+
+    public CompletableFuture<List<T>> findAsync(Query<T> query) {
+        return async(() -> find(query).asList());
+    }
+
+    public CompletableFuture<List<T>> findAllAsync(Filter<T> filter) {
+        return async(() -> findAll(filter));
+    }
+
+    public CompletableFuture<List<DBObject>> projectAsync(Query<T> query, DBObject projection) {
+        return async(() -> project(query, projection));
+    }
+
+    protected <R> CompletableFuture<R> async(Supplier<R> query) {
+        if (database == null) {
+            throw new MineCloudException("Repository " + collectionName() + " was not loaded into a database");
+        }
+
+        return database.async(query);
+    }
+
+    @Override
+    public Key<T> save(T entity) {
+        Key<T> key = super.save(entity);
+
+        changed(entity.entityId());
+        return key;
+    }
+
+    @Override
+    public WriteResult delete(T entity) {
+        WriteResult result = super.delete(entity);
+
+        changed(entity.entityId());
+        return result;
+    }
+
+    /**
+     * Drops the entity from this process' cache, without telling anyone else
+     */
+    public void invalidate(String id) {
+        if (cache != null) {
+            cache.invalidate(id);
+        }
+    }
+
+    private void record(DBObject query) {
+        if (database != null) {
+            database.queries().record(collectionName(), query);
+        }
+    }
+
+    private void changed(String id) {
+        invalidate(id);
+
+        if (cache != null && database != null) {
+            database.changed(this, id);
+        }
     }
 
     @Override
@@ -46,6 +178,80 @@ public abstract class AbstractMongoRepository<T extends MongoEntity> extends Bas
         return this.getCollection();
     }
 
+    @Override
+    public QueryResults<T> find(Query<T> query) {
+        record(query.getQueryObject());
+        return super.find(query);
+    }
+
+    @Override
+    public T findOne(String key, Object value) {
+        record(new BasicDBObject(key, value));
+        return super.findOne(key, value);
+    }
+
+    @Override
+    public long count(Query<T> query) {
+        record(query.getQueryObject());
+        return super.count(query);
+    }
+
+    /**
+     * @return the entities matching the filter, found by Mongo
+     */
+    public List<T> findAll(Filter<T> filter) {
+        return find(filter.apply(createQuery())).asList();
+    }
+
+    public long count(Filter<T> filter) {
+        return count(filter.apply(createQuery()));
+    }
+
+    /**
+     * Loads only the given fields of the matching entities, the rest are left at their defaults
+     */
+    public List<T> find(Query<T> query, String... fields) {
+        return find(query.retrievedFields(true, fields)).asList();
+    }
+
+    /**
+     * Reads the matching documents through a $project stage, for values like the size of a
+     * list which can be computed without sending the list over
+     */
+    public List<DBObject> project(Query<T> query, DBObject projection) {
+        record(query.getQueryObject());
+
+        List<DBObject> pipeline = Arrays.asList(new BasicDBObject("$match", query.getQueryObject()),
+                new BasicDBObject("$project", projection));
+        Cursor cursor = collection.aggregate(pipeline, CURSOR);
+        List<DBObject> documents = new ArrayList<>();
+
+        try {
+            while (cursor.hasNext()) {
+                documents.add(cursor.next());
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return documents;
+    }
+
+    /**
+     * @return the id of a reference as found in a raw document
+     */
+    public static String idOf(Object reference) {
+        if (reference instanceof DBRef) {
+            return String.valueOf(((DBRef) reference).getId());
+        }
+
+        if (reference instanceof DBObject) {
+            return String.valueOf(((DBObject) reference).get("$id"));
+        }
+
+        return reference == null ? null : String.valueOf(reference);
+    }
+
     @Override
     public Collection<T> models() {
         return find(createQuery().disableValidation()).asList();
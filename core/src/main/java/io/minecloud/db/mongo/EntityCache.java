@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.mongo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small process-local cache of entities by id, bounded in both size and age. Entries
+ * are dropped when the entity changes anywhere, see {@link MongoDatabase#setChangeListener},
+ * the age bound only covers changes made outside of MineCloud.
+ */
+public final class EntityCache<T> {
+    private final long ttl;
+    private final Map<String, Entry<T>> entries;
+    private long generation;
+
+    private EntityCache(long ttl, int maxSize) {
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, Entry<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static <T> EntityCache<T> create(long ttl, TimeUnit unit, int maxSize) {
+        return new EntityCache<>(unit.toMillis(ttl), maxSize);
+    }
+
+    public synchronized T get(String id) {
+        Entry<T> entry = entries.get(id);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (System.currentTimeMillis() - entry.loaded > ttl) {
+            entries.remove(id);
+            return null;
+        }
+
+        return entry.entity;
+    }
+
+    /**
+     * @return the generation to hand to {@link #put(String, Object, long)} after loading
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches the entity unless something was invalidated since it started loading, as it
+     * may have been loaded before that change
+     */
+    public synchronized void put(String id, T entity, long generation) {
+        if (this.generation == generation) {
+            entries.put(id, new Entry<>(entity, System.currentTimeMillis()));
+        }
+    }
+
+    public synchronized void invalidate(String id) {
+        generation++;
+        entries.remove(id);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry<T> {
+        private final T entity;
+        private final long loaded;
+
+        private Entry(T entity, long loaded) {
+            this.entity = entity;
+            this.loaded = loaded;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.mongo;
+
+import io.minecloud.db.mongo.model.MongoEntity;
+import org.mongodb.morphia.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conditions on the fields of an entity which Mongo evaluates, so lookups can use the
+ * collection's indexes instead of loading every entity like
+ * {@link MongoRepository#findAll(java.util.function.Predicate)} does. References are
+ * compared by id, without loading the referenced entity.
+ *
+ * <pre>
+ * repository.findAll(Filter.&lt;Server&gt;create().node(node).type(type));
+ * </pre>
+ */
+public final class Filter<T extends MongoEntity> {
+    private final List<Condition> conditions = new ArrayList<>();
+
+    private Filter() {
+    }
+
+    public static <T extends MongoEntity> Filter<T> create() {
+        return new Filter<>();
+    }
+
+    public Filter<T> node(MongoEntity node) {
+        return where("node", node);
+    }
+
+    public Filter<T> network(MongoEntity network) {
+        return where("network", network);
+    }
+
+    public Filter<T> type(MongoEntity type) {
+        return where("type", type);
+    }
+
+    public Filter<T> port(int port) {
+        return where("port", port);
+    }
+
+    public Filter<T> where(String field, Object value) {
+        conditions.add(new Condition(field, value, false));
+        return this;
+    }
+
+    public Filter<T> whereNot(String field, Object value) {
+        conditions.add(new Condition(field, value, true));
+        return this;
+    }
+
+    public Query<T> apply(Query<T> query) {
+        for (Condition condition : conditions) {
+            if (condition.negated) {
+                query.field(condition.field).notEqual(condition.value);
+            } else {
+                query.field(condition.field).equal(condition.value);
+            }
+        }
+
+        return query;
+    }
+
+    private static final class Condition {
+        private final String field;
+        private final Object value;
+        private final boolean negated;
+
+        private Condition(String field, Object value, boolean negated) {
+            this.field = field;
+            this.value = value;
+            this.negated = negated;
+        }
+    }
+}
@@ -23,16 +23,32 @@ import io.minecloud.db.Database;
 import io.minecloud.db.mongo.model.MongoEntity;
 import org.mongodb.morphia.Datastore;
 import org.mongodb.morphia.Morphia;
+import org.mongodb.morphia.mapping.lazy.proxy.ProxiedEntityReference;
 
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 public class MongoDatabase implements Database {
+    private static final int ASYNC_THREADS = 4;
+    private static final int ASYNC_QUEUE = 256;
+
     private final Map<Class<?>, MongoRepository<?>> repositories = new HashMap<>();
     private final Credentials credentials;
     private DB database;
     private Morphia morphia;
     private Datastore datastore;
+    private final QueryRecorder queries = QueryRecorder.create();
+    private volatile BiConsumer<String, String> changeListener;
+    private final ExecutorService executor = createExecutor();
 
     private MongoDatabase(Credentials credentials) {
         this.credentials = credentials;
@@ -48,6 +64,126 @@ public class MongoDatabase implements Database {
 
     public <T> void loadRepository(MongoRepository<T> repository, Class<T> cls) {
         repositories.put(cls, repository);
+
+        if (repository instanceof AbstractMongoRepository) {
+            ((AbstractMongoRepository<?>) repository).database = this;
+        }
+    }
+
+    /**
+     * Creates the indexes every loaded repository's entity declares and which don't exist yet.
+     * Only the controller and the CLI call this, so the servers and nodes starting up don't
+     * all hit Mongo with it.
+     */
+    public void ensureIndexes() {
+        for (MongoRepository<?> repository : repositories.values()) {
+            if (!(repository instanceof AbstractMongoRepository)) {
+                continue;
+            }
+
+            AbstractMongoRepository<?> mongoRepository = (AbstractMongoRepository<?>) repository;
+            Set<String> existing = indexesOf(mongoRepository.collection());
+
+            datastore.ensureIndexes(mongoRepository.getEntityClass());
+
+            for (String index : indexesOf(mongoRepository.collection())) {
+                if (!existing.contains(index)) {
+                    MineCloud.logger().info("Created index " + index + " on " + mongoRepository.collectionName());
+                }
+            }
+        }
+    }
+
+    private static Set<String> indexesOf(DBCollection collection) {
+        Set<String> names = new HashSet<>();
+
+        for (DBObject index : collection.getIndexInfo()) {
+            names.add(String.valueOf(index.get("name")));
+        }
+
+        return names;
+    }
+
+    /**
+     * Runs a query on the Mongo executor so event and network threads never wait on Mongo.
+     * The executor is bounded; when it is full the future fails straight away instead of
+     * queueing behind a slow database.
+     */
+    public <R> CompletableFuture<R> async(Supplier<R> query) {
+        try {
+            return CompletableFuture.supplyAsync(query, executor);
+        } catch (RejectedExecutionException ex) {
+            CompletableFuture<R> future = new CompletableFuture<>();
+
+            future.completeExceptionally(ex);
+            return future;
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(ASYNC_THREADS, ASYNC_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(ASYNC_QUEUE), (runnable) -> {
+                    Thread thread = new Thread(runnable, "MineCloud Mongo #" + threads.incrementAndGet());
+
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public QueryRecorder queries() {
+        return queries;
+    }
+
+    /**
+     * Resolves a lazy reference through the referenced repository's cache, if it has one,
+     * instead of letting the reference load the entity itself
+     */
+    public <T extends MongoEntity> T cached(T reference, Class<T> model) {
+        if (!(reference instanceof ProxiedEntityReference)) {
+            return reference;
+        }
+
+        ProxiedEntityReference proxy = (ProxiedEntityReference) reference;
+        AbstractMongoRepository<T> repository = repositoryBy(model);
+
+        if (proxy.__isFetched() || repository == null || !repository.cached()) {
+            return reference;
+        }
+
+        T entity = repository.findFirst(String.valueOf(proxy.__getKey().getId()));
+
+        return entity != null ? entity : reference;
+    }
+
+    /**
+     * Called with the collection and id of every saved or deleted cached entity, to let the
+     * other processes know
+     */
+    public void setChangeListener(BiConsumer<String, String> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Drops a changed entity from the cache of the repository for the collection
+     */
+    public void invalidate(String collection, String id) {
+        for (MongoRepository<?> repository : repositories.values()) {
+            if (repository.collectionName().equals(collection) && repository instanceof AbstractMongoRepository) {
+                ((AbstractMongoRepository<?>) repository).invalidate(id);
+            }
+        }
+    }
+
+    void changed(AbstractMongoRepository<?> repository, String id) {
+        BiConsumer<String, String> listener = changeListener;
+
+        if (listener != null) {
+            listener.accept(repository.collectionName(), id);
+        }
     }
 
     public DB db() {
@@ -36,6 +36,11 @@ public interface MongoRepository<T> {
 
     public T findFirst(String id);
 
+    /**
+     * Loads the whole collection to test each entity, use
+     * {@link AbstractMongoRepository#findAll(Filter)} for anything queried often
+     */
+    @Deprecated
     public default Collection<T> findAll(Predicate<T> predicate) {
         return models().stream().filter(predicate).collect(Collectors.toList());
     }
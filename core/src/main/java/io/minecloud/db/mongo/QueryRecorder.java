@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.mongo;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import io.minecloud.MineCloud;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the shapes of the queries a process runs, the collection and the fields it
+ * filters on, and keeps one sample of each with its values redacted. They are handed to
+ * a sink every minute from a background thread, so the queries of every process can be
+ * explained in one place to find those without an index.
+ */
+public final class QueryRecorder {
+    private static final long FLUSH_INTERVAL = 60_000L;
+    private static final String REDACTED = "?";
+
+    private final Map<String, Shape> shapes = new ConcurrentHashMap<>();
+    private volatile Consumer<Collection<Shape>> sink;
+    private ScheduledExecutorService flusher;
+
+    private QueryRecorder() {
+    }
+
+    public static QueryRecorder create() {
+        return new QueryRecorder();
+    }
+
+    public synchronized void setSink(Consumer<Collection<Shape>> sink) {
+        this.sink = sink;
+
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "MineCloud Query Recorder");
+
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void record(String collection, DBObject query) {
+        if (sink == null) {
+            return;
+        }
+
+        String fields = String.join(",", new TreeSet<>(query.keySet()));
+
+        shapes.computeIfAbsent(collection + "|" + fields,
+                (key) -> new Shape(collection, fields, (DBObject) redact(null, query)))
+                .count.increment();
+    }
+
+    /**
+     * Replaces every value with a placeholder of a type the same operators accept, so the
+     * sample can still be explained without carrying player ids or names
+     */
+    private static Object redact(String key, Object value) {
+        if (value instanceof List) {
+            BasicDBList redacted = new BasicDBList();
+            List<?> list = (List<?>) value;
+
+            if (!list.isEmpty()) {
+                redacted.add(redact(key, list.get(0)));
+            }
+
+            return redacted;
+        }
+
+        if (value instanceof DBObject) {
+            DBObject object = (DBObject) value;
+            BasicDBObject redacted = new BasicDBObject();
+
+            object.keySet().forEach((field) -> redacted.put(field, redact(field, object.get(field))));
+            return redacted;
+        }
+
+        if (value instanceof Pattern) {
+            return Pattern.compile(Pattern.quote(REDACTED));
+        }
+
+        if ("$regex".equals(key)) {
+            return Pattern.quote(REDACTED);
+        }
+
+        if (value instanceof Boolean || "$options".equals(key)) {
+            return value;
+        }
+
+        return value instanceof Number ? 0 : REDACTED;
+    }
+
+    private void flush() {
+        List<Shape> recorded = new ArrayList<>();
+
+        shapes.values().forEach((shape) -> {
+            long count = shape.count.sumThenReset();
+
+            if (count > 0) {
+                recorded.add(new Shape(shape.collection, shape.fields, shape.sample, count));
+            }
+        });
+
+        Consumer<Collection<Shape>> sink = this.sink;
+
+        if (sink != null && !recorded.isEmpty()) {
+            try {
+                sink.accept(recorded);
+            } catch (RuntimeException ex) {
+                MineCloud.logger().log(Level.WARNING, "Unable to hand off query shapes", ex);
+            }
+        }
+    }
+
+    public static final class Shape {
+        private final String collection;
+        private final String fields;
+        private final DBObject sample;
+        private final LongAdder count = new LongAdder();
+
+        private Shape(String collection, String fields, DBObject sample) {
+            this.collection = collection;
+            this.fields = fields;
+            this.sample = sample;
+        }
+
+        private Shape(String collection, String fields, DBObject sample, long count) {
+            this(collection, fields, sample);
+            this.count.add(count);
+        }
+
+        public String collection() {
+            return collection;
+        }
+
+        /**
+         * @return the fields queried on, sorted and separated by commas
+         */
+        public String fields() {
+            return fields;
+        }
+
+        public DBObject sample() {
+            return sample;
+        }
+
+        public long count() {
+            return count.sum();
+        }
+    }
+}
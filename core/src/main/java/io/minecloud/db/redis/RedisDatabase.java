@@ -18,19 +18,34 @@ package io.minecloud.db.redis;
 import io.minecloud.MineCloud;
 import io.minecloud.db.Credentials;
 import io.minecloud.db.Database;
+import io.minecloud.db.redis.command.CommandBus;
+import io.minecloud.db.redis.msg.Message;
+import io.minecloud.db.redis.msg.schema.MessageCodec;
+import io.minecloud.db.redis.msg.schema.NameTable;
+import io.minecloud.db.redis.pubsub.NodeChannels;
+import io.minecloud.db.redis.pubsub.PublishBatch;
 import io.minecloud.db.redis.pubsub.RedisChannel;
+import io.minecloud.db.redis.pubsub.RedisSubscriber;
 import io.minecloud.db.redis.pubsub.SimpleRedisChannel;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class RedisDatabase implements Database {
-    private final Map<String, RedisChannel> channels = new HashMap<>();
+    private final Map<String, RedisChannel> channels = new ConcurrentHashMap<>();
     private final Credentials credentials;
     private JedisPool pool;
+    private RedisSubscriber subscriber;
+    private MessageCodec codec;
+    private NodeChannels nodeChannels;
+    private CommandBus commands;
+    private String host;
+    private int port;
 
     private RedisDatabase(Credentials credentials) {
         this.credentials = credentials;
@@ -50,8 +65,8 @@ public final class RedisDatabase implements Database {
         config.setMaxWaitMillis(200L);
         config.setBlockWhenExhausted(false);
 
-        String host = credentials.hosts()[0];
-        int port = 6379;
+        host = credentials.hosts()[0];
+        port = 6379;
 
         if (host.split(":").length == 2) {
             try {
@@ -63,6 +78,72 @@ public final class RedisDatabase implements Database {
 
         pool = credentials.password() != null && credentials.password().length > 0 ? new JedisPool(config, host, port, 1000, new String(credentials.password())) :
                 new JedisPool(config, host, port, 1000);
+
+        //Kept across reconnects, it re-establishes its own connection
+        if (subscriber == null) {
+            subscriber = RedisSubscriber.create(this);
+            codec = MessageCodec.create(NameTable.create(this));
+            nodeChannels = NodeChannels.create(this);
+            commands = CommandBus.create(this);
+        }
+    }
+
+    /**
+     * Opens a connection outside of the pool, for uses which hold on to it like subscribing.
+     * The connection has no read timeout.
+     */
+    public Jedis connect() {
+        Jedis jedis = new Jedis(host, port, 0);
+
+        if (credentials.password() != null && credentials.password().length > 0) {
+            jedis.auth(new String(credentials.password()));
+        }
+
+        return jedis;
+    }
+
+    public RedisSubscriber subscriber() {
+        return subscriber;
+    }
+
+    /**
+     * Opens a batch collecting this thread's publishes until it's closed, see {@link PublishBatch}
+     */
+    public PublishBatch batch() {
+        return PublishBatch.open(this);
+    }
+
+    public CommandBus commands() {
+        return commands;
+    }
+
+    public NodeChannels nodeChannels() {
+        return nodeChannels;
+    }
+
+    /**
+     * Publishes without subscribing to the channel, or adds the message to the
+     * {@link PublishBatch} open on this thread
+     */
+    public void publish(String channel, Message message) {
+        publish(channel.getBytes(StandardCharsets.UTF_8), message);
+    }
+
+    public void publish(byte[] channel, Message message) {
+        PublishBatch batch = PublishBatch.current();
+
+        if (batch != null) {
+            batch.add(channel, message);
+            return;
+        }
+
+        try (Jedis resource = grabResource()) {
+            resource.publish(channel, message.raw());
+        }
+    }
+
+    public MessageCodec codec() {
+        return codec;
     }
 
     public void addChannel(RedisChannel channel) {
@@ -70,11 +151,30 @@ public final class RedisDatabase implements Database {
     }
 
     public RedisChannel channelBy(String name) {
-        if (!channels.containsKey(name)) {
-            addChannel(SimpleRedisChannel.create(name, this));
+        RedisChannel channel = channels.get(name);
+
+        if (channel != null) {
+            return channel;
+        }
+
+        // Created outside the map, subscribing can wait on the connection for a while
+        RedisChannel created = SimpleRedisChannel.create(name, this);
+        RedisChannel existing = channels.putIfAbsent(name, created);
+
+        if (existing != null) {
+            subscriber.subscribe(existing); // lost the race, hand the subscription back
+            return existing;
         }
 
-        return channels.get(name);
+        return created;
+    }
+
+    public void removeChannel(String name) {
+        RedisChannel channel = channels.remove(name);
+
+        if (channel != null) {
+            channel.unsubscribe();
+        }
     }
 
     public Jedis grabResource() {
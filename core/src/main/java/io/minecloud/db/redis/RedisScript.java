@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.List;
+
+/**
+ * A Lua script which is sent to Redis once with SCRIPT LOAD and called by its hash after
+ * that. When Redis lost it, after a restart or SCRIPT FLUSH, it's loaded again.
+ */
+public final class RedisScript {
+    private final String source;
+    private volatile String sha;
+
+    private RedisScript(String source) {
+        this.source = source;
+    }
+
+    public static RedisScript create(String source) {
+        return new RedisScript(source);
+    }
+
+    public Object eval(Jedis jedis, List<String> keys, List<String> args) {
+        try {
+            return jedis.evalsha(load(jedis), keys, args);
+        } catch (JedisDataException ex) {
+            if (!missing(ex)) {
+                throw ex;
+            }
+
+            return jedis.evalsha(load(jedis), keys, args);
+        }
+    }
+
+    /**
+     * @return whether the failure is Redis not knowing the script, after which it's loaded again
+     */
+    public boolean missing(JedisDataException ex) {
+        if (ex.getMessage() == null || !ex.getMessage().startsWith("NOSCRIPT")) {
+            return false;
+        }
+
+        sha = null;
+        return true;
+    }
+
+    /**
+     * Loads the script unless it was already, to call it by the returned hash in a pipeline.
+     * Must be called before the pipeline is opened on the connection.
+     */
+    public String load(Jedis jedis) {
+        String loaded = sha;
+
+        if (loaded == null) {
+            loaded = jedis.scriptLoad(source);
+            sha = loaded;
+        }
+
+        return loaded;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis.command;
+
+import io.minecloud.annotation.Immutable;
+import io.minecloud.db.redis.msg.Message;
+import io.minecloud.db.redis.msg.binary.MessageInputStream;
+import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * A command queued for a node, carrying the id it's deduplicated by and how often its
+ * delivery has failed so far
+ */
+@Immutable
+public final class Command {
+    private final String id;
+    private final String name;
+    private final int attempts;
+    private final long created;
+    private final Message payload;
+
+    private Command(String id, String name, int attempts, long created, Message payload) {
+        this.id = id;
+        this.name = name;
+        this.attempts = attempts;
+        this.created = created;
+        this.payload = payload;
+    }
+
+    public static Command create(String name, Message payload) {
+        return new Command(UUID.randomUUID().toString(), name, 0, System.currentTimeMillis(), payload);
+    }
+
+    static Command decode(byte[] raw) throws IOException {
+        MessageInputStream in = new MessageInputStream(raw);
+
+        return new Command(in.readString(), in.readString(), in.readVarInt32(), in.readLong(), in.readMessage());
+    }
+
+    byte[] encode() throws IOException {
+        try (MessageOutputStream out = MessageOutputStream.pooled()) {
+            out.writeString(id);
+            out.writeString(name);
+            out.writeVarInt32(attempts);
+            out.writeLong(created);
+            out.writeMessage(payload);
+
+            return out.toByteArray();
+        }
+    }
+
+    Command retried() {
+        return new Command(id, name, attempts + 1, created, payload);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int attempts() {
+        return attempts;
+    }
+
+    public long created() {
+        return created;
+    }
+
+    public Message payload() {
+        return payload;
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis.command;
+
+import io.minecloud.MineCloud;
+import io.minecloud.MineCloudException;
+import io.minecloud.db.redis.RedisDatabase;
+import io.minecloud.db.redis.msg.Message;
+import io.minecloud.db.redis.pubsub.PublishBatch;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Delivers commands to nodes through a Redis list per node rather than pub/sub, so a
+ * command sent while the node is down or reconnecting waits for it instead of being lost.
+ *
+ * A node takes commands with BRPOPLPUSH into its processing list and removes them once
+ * handled. Whatever is still in the processing list when the node starts was taken by a
+ * previous run which died, and is queued again. Failed commands wait in a delayed set,
+ * backing off between attempts, and are retried up to {@link #MAX_ATTEMPTS} times before
+ * going to the {@code commands:dead} list. Commands older than {@link #EXPIRE_AFTER} go
+ * there too rather than being handled late, and a command which completed once is
+ * skipped if it's delivered again.
+ */
+public final class CommandBus {
+    public static final int MAX_ATTEMPTS = 5;
+    public static final long EXPIRE_AFTER = 10 * 60_000L;
+    private static final long RETRY_DELAY = 1000L;
+    private static final long MAX_BACKOFF = 30_000L;
+    private static final String CONSUMERS = "command-consumers";
+    private static final String DEAD_LETTERS = "commands:dead";
+    private static final long STALE_AFTER = 30_000L;
+    private static final long REFRESH_INTERVAL = 10_000L;
+    private static final int COMPLETED_TTL = 24 * 60 * 60;
+
+    private final RedisDatabase database;
+    private volatile Set<String> consumers = Collections.emptySet();
+    private volatile long lastRefresh;
+
+    private CommandBus(RedisDatabase database) {
+        this.database = database;
+    }
+
+    public static CommandBus create(RedisDatabase database) {
+        return new CommandBus(database);
+    }
+
+    private static byte[] queueOf(String node) {
+        return ("node:" + node + ":commands").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] processingOf(String node) {
+        return ("node:" + node + ":commands:processing").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] delayedOf(String node) {
+        return ("node:" + node + ":commands:delayed").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Queues the command for the node, if the node takes commands from the bus. While a
+     * {@link PublishBatch} is open on this thread the command goes out with the batch.
+     *
+     * @return false when the node doesn't, the caller should fall back to publishing
+     */
+    public boolean send(String node, String command, Message payload) {
+        if (!consumers().contains(node)) {
+            return false;
+        }
+
+        byte[] encoded;
+
+        try {
+            encoded = Command.create(command, payload).encode();
+        } catch (IOException ex) {
+            throw new MineCloudException("Could not encode " + command + " command", ex);
+        }
+
+        PublishBatch batch = PublishBatch.current();
+
+        if (batch != null) {
+            batch.push(queueOf(node), encoded);
+            return true;
+        }
+
+        try (Jedis jedis = database.grabResource()) {
+            jedis.lpush(queueOf(node), encoded);
+        }
+
+        return true;
+    }
+
+    /**
+     * Takes this node's commands on a new thread until it's interrupted
+     */
+    public Thread consume(String node, CommandHandler handler) {
+        Thread thread = new Thread(() -> {
+            boolean recovered = false;
+            long backoff = RETRY_DELAY;
+
+            while (!Thread.currentThread().isInterrupted()) {
+                try (Jedis jedis = database.connect()) {
+                    long lastAnnounce = 0;
+
+                    if (!recovered) {
+                        recover(jedis, node);
+                        recovered = true;
+                    }
+
+                    while (!Thread.currentThread().isInterrupted()) {
+                        if (System.currentTimeMillis() - lastAnnounce > STALE_AFTER / 3) {
+                            jedis.hset(CONSUMERS, node, String.valueOf(System.currentTimeMillis()));
+                            lastAnnounce = System.currentTimeMillis();
+                        }
+
+                        requeueDue(jedis, node);
+                        byte[] raw = jedis.brpoplpush(queueOf(node), processingOf(node), 1);
+
+                        if (raw != null) {
+                            deliver(jedis, node, raw, handler);
+                        }
+
+                        backoff = RETRY_DELAY;
+                    }
+                } catch (JedisException | RuntimeException ex) {
+                    MineCloud.logger().log(Level.WARNING, "Command bus failed, resuming in " + backoff + "ms", ex);
+
+                    try {
+                        Thread.sleep(backoff);
+                    } catch (InterruptedException ignored) {
+                        return;
+                    }
+
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF);
+                }
+            }
+        }, "Command Bus");
+
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void deliver(Jedis jedis, String node, byte[] raw, CommandHandler handler) {
+        Command command;
+
+        try {
+            command = Command.decode(raw);
+        } catch (IOException | RuntimeException ex) {
+            MineCloud.logger().log(Level.SEVERE, "Dropping an unreadable command for " + node, ex);
+            jedis.lpush(DEAD_LETTERS.getBytes(StandardCharsets.UTF_8), raw);
+            jedis.lrem(processingOf(node), 1, raw);
+            return;
+        }
+
+        String completed = "command:" + command.id();
+
+        if (System.currentTimeMillis() - command.created() > EXPIRE_AFTER) {
+            MineCloud.logger().warning("Dropping " + command.name() + " command " + command.id() + ", it expired after "
+                    + command.attempts() + " attempts");
+            jedis.lpush(DEAD_LETTERS.getBytes(StandardCharsets.UTF_8), raw);
+        } else if (!jedis.exists(completed)) {
+            try {
+                handler.handle(command);
+                jedis.setex(completed, COMPLETED_TTL, node);
+            } catch (Exception ex) {
+                retry(jedis, node, command, ex);
+            }
+        }
+
+        jedis.lrem(processingOf(node), 1, raw);
+    }
+
+    private void retry(Jedis jedis, String node, Command command, Exception cause) {
+        Command retry = command.retried();
+
+        try {
+            if (retry.attempts() >= MAX_ATTEMPTS) {
+                MineCloud.logger().log(Level.SEVERE, "Giving up on " + command.name() + " command " + command.id()
+                        + " after " + retry.attempts() + " attempts", cause);
+                jedis.lpush(DEAD_LETTERS.getBytes(StandardCharsets.UTF_8), retry.encode());
+            } else {
+                long delay = Math.min(RETRY_DELAY << (retry.attempts() - 1), MAX_BACKOFF);
+
+                MineCloud.logger().log(Level.WARNING, "Failed to handle " + command.name() + " command "
+                        + command.id() + ", retrying in " + delay + "ms", cause);
+                jedis.zadd(delayedOf(node), System.currentTimeMillis() + delay, retry.encode());
+            }
+        } catch (IOException ex) {
+            MineCloud.logger().log(Level.SEVERE, "Could not requeue command " + command.id(), ex);
+        }
+    }
+
+    /**
+     * Moves the retries which are due back onto the queue, removing each from the delayed
+     * set first so only one pass ever requeues it
+     */
+    private void requeueDue(Jedis jedis, String node) {
+        Set<byte[]> due = jedis.zrangeByScore(delayedOf(node), 0, System.currentTimeMillis());
+
+        for (byte[] raw : due) {
+            if (jedis.zrem(delayedOf(node), raw) > 0) {
+                jedis.lpush(queueOf(node), raw);
+            }
+        }
+    }
+
+    private void recover(Jedis jedis, String node) {
+        int recovered = 0;
+
+        while (jedis.rpoplpush(processingOf(node), queueOf(node)) != null) {
+            recovered++;
+        }
+
+        if (recovered > 0) {
+            MineCloud.logger().info("Requeued " + recovered + " commands left unfinished by the last run");
+        }
+    }
+
+    private Set<String> consumers() {
+        long now = System.currentTimeMillis();
+
+        if (now - lastRefresh < REFRESH_INTERVAL) {
+            return consumers;
+        }
+
+        Map<String, String> nodes;
+
+        try (Jedis jedis = database.grabResource()) {
+            nodes = jedis.hgetAll(CONSUMERS);
+        }
+
+        Set<String> fresh = new HashSet<>();
+
+        nodes.forEach((node, announced) -> {
+            if (now - Long.parseLong(announced) < STALE_AFTER) {
+                fresh.add(node);
+            }
+        });
+
+        consumers = fresh;
+        lastRefresh = now;
+        return fresh;
+    }
+}
@@ -19,49 +19,82 @@ import io.minecloud.annotation.Immutable;
 import io.minecloud.db.redis.msg.binary.MessageInputStream;
 import org.json.JSONObject;
 
-import java.nio.charset.Charset;
-
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message is a view over a region of a byte array, usually the payload received from
+ * Redis or the buffer of a {@link io.minecloud.db.redis.msg.binary.MessageOutputStream},
+ * so reading and publishing one doesn't copy its contents around. When the byte before
+ * the region is free for the type header and the region runs to the end of the array,
+ * the array is published as is.
+ */
 @Immutable
 public final class Message {
     private final MessageType type;
-    private final byte[] contents;
-
-    private Message(byte[] contents) {
-        this.contents = contents;
-        this.type = MessageType.BINARY;
+    private final byte[] buffer;
+    private final int offset;
+    private final int length;
+
+    private Message(MessageType type, byte[] buffer, int offset, int length) {
+        this.type = type;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
     }
 
-    private Message(JSONObject object) {
-        this.type = MessageType.JSON;
-        this.contents = object.toString().getBytes(Charset.forName("UTF-8"));
+    public static Message messageFrom(byte[] contents) {
+        return new Message(MessageType.BINARY, contents, 0, contents.length);
     }
 
-    private Message(String content) {
-        this.type = MessageType.STRING;
-        this.contents = content.getBytes(Charset.forName("UTF-8"));
+    public static Message messageFrom(JSONObject object) {
+        return withHeader(MessageType.JSON, object.toString().getBytes(StandardCharsets.UTF_8));
     }
 
-    public static Message messageFrom(byte[] contents) {
-        return new Message(contents);
+    public static Message messageFrom(String content) {
+        return withHeader(MessageType.STRING, content.getBytes(StandardCharsets.UTF_8));
     }
 
-    public static Message messageFrom(JSONObject object) {
-        return new Message(object);
+    /**
+     * Creates a message over the given region without copying it. The region must not be
+     * modified afterwards.
+     */
+    public static Message view(MessageType type, byte[] buffer, int offset, int length) {
+        return new Message(type, buffer, offset, length);
     }
 
-    public static Message messageFrom(String content) {
-        return new Message(content);
+    private static Message withHeader(MessageType type, byte[] contents) {
+        byte[] raw = new byte[contents.length + 1];
+
+        System.arraycopy(contents, 0, raw, 1, contents.length);
+        return new Message(type, raw, 1, contents.length);
     }
 
     public MessageInputStream contents() {
-        return new MessageInputStream(contents);
+        return new MessageInputStream(buffer, offset, length);
+    }
+
+    /**
+     * @return a read-only buffer over the contents of this message
+     */
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(buffer, offset, length).slice().asReadOnlyBuffer();
+    }
+
+    public int length() {
+        return length;
     }
 
     public byte[] raw() {
-        byte[] raw = new byte[contents.length + 1];
+        if (offset == 1 && buffer.length == length + 1) {
+            buffer[0] = (byte) type.ordinal();
+            return buffer;
+        }
+
+        byte[] raw = new byte[length + 1];
 
         raw[0] = (byte) type.ordinal();
-        System.arraycopy(contents, 0, raw, 1, contents.length);
+        System.arraycopy(buffer, offset, raw, 1, length);
 
         return raw;
     }
@@ -79,9 +112,9 @@ public final class Message {
 
     @Override
     public String toString() {
-        if (type() == MessageType.BINARY)
+        if (type() == MessageType.BINARY || type() == MessageType.SCHEMA)
             throw new UnsupportedOperationException("Cannot convert non-string binary to String");
 
-        return new String(contents, Charset.forName("UTF-8"));
+        return new String(buffer, offset, length, StandardCharsets.UTF_8);
     }
 }
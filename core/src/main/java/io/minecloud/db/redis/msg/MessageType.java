@@ -18,5 +18,10 @@ package io.minecloud.db.redis.msg;
 public enum MessageType {
     JSON,
     STRING,
-    BINARY
+    BINARY,
+    /**
+     * Binary contents led by a schema id and version, see {@link io.minecloud.db.redis.msg.schema.MessageCodec}.
+     * Must stay last so older readers see an unknown type rather than a wrong one.
+     */
+    SCHEMA
 }
@@ -20,8 +20,10 @@ import io.minecloud.db.redis.msg.MessageType;
 import org.json.JSONObject;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
 
 public class MessageInputStream extends ByteArrayInputStream {
 
@@ -29,26 +31,29 @@ public class MessageInputStream extends ByteArrayInputStream {
         super(buf);
     }
 
-    public Message readMessage() {
-        byte[] message = new byte[readVarInt32()];
-        MessageType type = MessageType.values()[read()];
-        byte[] data = new byte[message.length - 1];
-
-        System.arraycopy(message, 1, data, 0, message.length - 1);
+    /**
+     * Reads the given region of the array in place
+     */
+    public MessageInputStream(byte[] buf, int offset, int length) {
+        super(buf, offset, length);
+    }
 
-        switch (type) {
-            case BINARY:
-                return Message.messageFrom(data);
+    /**
+     * Reads a message written by {@link MessageOutputStream#writeMessage(Message)}. The
+     * message is a view over this stream's array rather than a copy.
+     */
+    public Message readMessage() throws IOException {
+        int length = readVarInt32();
 
-            case JSON:
-                return Message.messageFrom(new JSONObject(new String(data, Charset.forName("UTF-8"))));
+        if (length < 1 || length > available()) {
+            throw new EOFException("Message of " + length + " bytes does not fit in the " + available() + " left");
+        }
 
-            case STRING:
-                return Message.messageFrom(new String(data, Charset.forName("UTF-8")));
+        MessageType type = MessageType.values()[read()];
+        Message message = Message.view(type, buf, pos, length - 1);
 
-            default:
-                throw new IllegalStateException("Invalid message type!");
-        }
+        pos += length - 1;
+        return message;
     }
 
     public int readVarInt32() {
@@ -70,13 +75,35 @@ public class MessageInputStream extends ByteArrayInputStream {
         return result + ((b & 0x7F) << i);
     }
 
+    public long readLong() throws IOException {
+        if (available() < 8) {
+            throw new EOFException("Long needs 8 bytes, " + available() + " left");
+        }
+
+        long l = 0;
+
+        for (int i = 0; i < 8; i++) {
+            l = (l << 8) | (read() & 0xFF);
+        }
+
+        return l;
+    }
+
+    public UUID readUuid() throws IOException {
+        return new UUID(readLong(), readLong());
+    }
+
     public String readString() throws IOException {
         int length = readVarInt32();
-        byte[] bytes = new byte[length];
 
-        read(bytes);
+        if (length > available()) {
+            throw new EOFException("String of " + length + " bytes does not fit in the " + available() + " left");
+        }
+
+        String s = new String(buf, pos, length, StandardCharsets.UTF_8);
 
-        return new String(bytes, Charset.forName("UTF-8"));
+        pos += length;
+        return s;
     }
 
     public JSONObject readJson() throws IOException {
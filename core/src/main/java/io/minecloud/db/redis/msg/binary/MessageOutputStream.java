@@ -16,19 +16,57 @@
 package io.minecloud.db.redis.msg.binary;
 
 import io.minecloud.db.redis.msg.Message;
+import io.minecloud.db.redis.msg.MessageType;
 import org.json.JSONObject;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
 
+/**
+ * Writes the contents of a binary message. The first byte of the buffer is kept free for
+ * the type header, so {@link #toMessage()} hands the buffer over for publishing without
+ * copying it when it's exactly full, and with one copy otherwise.
+ */
 public class MessageOutputStream extends ByteArrayOutputStream {
+    private static final int MAX_POOLED_SIZE = 64 * 1024;
+    private static final ThreadLocal<MessageOutputStream> POOL = ThreadLocal.withInitial(() -> new MessageOutputStream(true));
 
-    public void writeMessage(Message message) throws IOException {
-        byte[] raw = message.raw();
+    private final boolean pooled;
+    private boolean inUse;
+
+    public MessageOutputStream() {
+        this(false);
+    }
+
+    private MessageOutputStream(boolean pooled) {
+        super(256);
+        this.pooled = pooled;
+        count = 1;
+    }
+
+    /**
+     * Borrows this thread's stream, which keeps its buffer between uses. It is returned by
+     * closing it; when it's already borrowed a new stream is handed out instead.
+     */
+    public static MessageOutputStream pooled() {
+        MessageOutputStream stream = POOL.get();
+
+        if (stream.inUse) {
+            return new MessageOutputStream();
+        }
 
-        writeVarInt32(raw.length);
-        write(raw);
+        stream.inUse = true;
+        stream.reset();
+        return stream;
+    }
+
+    public void writeMessage(Message message) throws IOException {
+        writeVarInt32(message.length() + 1);
+        write(message.type().ordinal());
+        write(message.raw(), 1, message.length());
     }
 
     public void writeJson(JSONObject object) throws IOException {
@@ -36,7 +74,7 @@ public class MessageOutputStream extends ByteArrayOutputStream {
     }
 
     public void writeString(String s) throws IOException {
-        byte[] bytes = s.getBytes(Charset.forName("UTF-8"));
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
 
         writeVarInt32(bytes.length);
         write(bytes);
@@ -52,7 +90,55 @@ public class MessageOutputStream extends ByteArrayOutputStream {
         write(i & 0x7F);
     }
 
+    public void writeLong(long l) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            write((int) (l >>> shift) & 0xFF);
+        }
+    }
+
+    public void writeUuid(UUID uuid) {
+        writeLong(uuid.getMostSignificantBits());
+        writeLong(uuid.getLeastSignificantBits());
+    }
+
     public Message toMessage() {
-        return Message.messageFrom(toByteArray());
+        return toMessage(MessageType.BINARY);
+    }
+
+    public Message toMessage(MessageType type) {
+        buf[0] = (byte) type.ordinal();
+
+        //A pooled buffer is written to again, the message needs its own
+        byte[] raw = !pooled && count == buf.length ? buf : Arrays.copyOf(buf, count);
+
+        return Message.view(type, raw, 1, count - 1);
+    }
+
+    @Override
+    public synchronized void reset() {
+        count = 1;
+    }
+
+    @Override
+    public synchronized int size() {
+        return count - 1;
+    }
+
+    @Override
+    public synchronized byte[] toByteArray() {
+        return Arrays.copyOfRange(buf, 1, count);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!pooled) {
+            return;
+        }
+
+        if (buf.length > MAX_POOLED_SIZE) {
+            buf = new byte[256];
+        }
+
+        inUse = false;
     }
 }
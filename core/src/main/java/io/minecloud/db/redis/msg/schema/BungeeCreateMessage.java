@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis.msg.schema;
+
+import io.minecloud.annotation.Immutable;
+import io.minecloud.db.redis.msg.binary.MessageInputStream;
+import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+
+import java.io.IOException;
+
+/**
+ * Asks a node to deploy a bungee, published on {@code bungee-create}
+ */
+@Immutable
+public final class BungeeCreateMessage {
+    public static final Schema<BungeeCreateMessage> SCHEMA = new Schema<BungeeCreateMessage>() {
+        @Override
+        public int id() {
+            return 2;
+        }
+
+        @Override
+        public int version() {
+            return 1;
+        }
+
+        @Override
+        public String name() {
+            return "bungee-create";
+        }
+
+        @Override
+        public void write(BungeeCreateMessage value, MessageOutputStream out, NameTable names) throws IOException {
+            out.writeVarInt32(names.idOf(value.node));
+            out.writeVarInt32(names.idOf(value.network));
+            out.writeVarInt32(names.idOf(value.type));
+        }
+
+        @Override
+        public BungeeCreateMessage read(MessageInputStream in, NameTable names, int version) throws IOException {
+            return new BungeeCreateMessage(names.nameOf(in.readVarInt32()), names.nameOf(in.readVarInt32()),
+                    names.nameOf(in.readVarInt32()));
+        }
+
+        @Override
+        public void writeLegacy(BungeeCreateMessage value, MessageOutputStream out) throws IOException {
+            out.writeString(value.node);
+            out.writeString(value.network);
+            out.writeString(value.type);
+        }
+
+        @Override
+        public BungeeCreateMessage readLegacy(MessageInputStream in) throws IOException {
+            return new BungeeCreateMessage(in.readString(), in.readString(), in.readString());
+        }
+    };
+
+    private final String node;
+    private final String network;
+    private final String type;
+
+    private BungeeCreateMessage(String node, String network, String type) {
+        this.node = node;
+        this.network = network;
+        this.type = type;
+    }
+
+    public static BungeeCreateMessage create(String node, String network, String type) {
+        return new BungeeCreateMessage(node, network, type);
+    }
+
+    public String node() {
+        return node;
+    }
+
+    public String network() {
+        return network;
+    }
+
+    public String type() {
+        return type;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis.msg.schema;
+
+import io.minecloud.annotation.Immutable;
+import io.minecloud.db.redis.msg.binary.MessageInputStream;
+import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Kicks a player back to their reconnect server, published on {@code cardinal}
+ */
+@Immutable
+public final class KickMessage {
+    public static final Schema<KickMessage> SCHEMA = new Schema<KickMessage>() {
+        @Override
+        public int id() {
+            return 5;
+        }
+
+        @Override
+        public int version() {
+            return 1;
+        }
+
+        @Override
+        public String name() {
+            return "kick";
+        }
+
+        @Override
+        public void write(KickMessage value, MessageOutputStream out, NameTable names) throws IOException {
+            out.writeUuid(value.player);
+            out.writeString(value.reason);
+        }
+
+        @Override
+        public KickMessage read(MessageInputStream in, NameTable names, int version) throws IOException {
+            return new KickMessage(in.readUuid(), in.readString());
+        }
+
+        @Override
+        public void writeLegacy(KickMessage value, MessageOutputStream out) throws IOException {
+            out.writeString(name());
+            out.writeString(value.player.toString());
+            out.writeString(value.reason);
+        }
+
+        @Override
+        public KickMessage readLegacy(MessageInputStream in) throws IOException {
+            if (!in.readString().equals(name())) {
+                throw new IOException("Not a kick message");
+            }
+
+            return new KickMessage(UUID.fromString(in.readString()), in.readString());
+        }
+    };
+
+    private final UUID player;
+    private final String reason;
+
+    private KickMessage(UUID player, String reason) {
+        this.player = player;
+        this.reason = reason;
+    }
+
+    public static KickMessage create(UUID player, String reason) {
+        return new KickMessage(player, reason);
+    }
+
+    public UUID player() {
+        return player;
+    }
+
+    /**
+     * @return the reason as a serialized chat component
+     */
+    public String reason() {
+        return reason;
+    }
+}
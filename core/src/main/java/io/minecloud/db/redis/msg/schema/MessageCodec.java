@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis.msg.schema;
+
+import io.minecloud.MineCloudException;
+import io.minecloud.db.redis.msg.Message;
+import io.minecloud.db.redis.msg.MessageType;
+import io.minecloud.db.redis.msg.binary.MessageInputStream;
+import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes and decodes typed messages. Schema messages are laid out as the
+ * {@link MessageType#SCHEMA} header, the schema id and version as varints, then the fields.
+ *
+ * Decoding understands both the schema and the legacy form, while encoding only uses the
+ * schema form once it's enabled, through the {@code message_codec=schema} environment
+ * variable or {@link #setEnabled(boolean)}. Rolling out is therefore a matter of upgrading
+ * everything first and enabling the codec afterwards.
+ */
+public final class MessageCodec {
+    private final Map<Integer, Schema<?>> schemas = new ConcurrentHashMap<>();
+    private final NameTable names;
+    private volatile boolean enabled;
+
+    private MessageCodec(NameTable names) {
+        this.names = names;
+        this.enabled = "schema".equalsIgnoreCase(System.getenv("message_codec"));
+    }
+
+    public static MessageCodec create(NameTable names) {
+        MessageCodec codec = new MessageCodec(names);
+
+        codec.register(ServerCreateMessage.SCHEMA);
+        codec.register(BungeeCreateMessage.SCHEMA);
+        codec.register(TeleportMessage.TO_SERVER);
+        codec.register(TeleportMessage.TO_TYPE);
+        codec.register(KickMessage.SCHEMA);
+        codec.register(PartyJoinMessage.SCHEMA);
+
+        return codec;
+    }
+
+    public void register(Schema<?> schema) {
+        Schema<?> existing = schemas.putIfAbsent(schema.id(), schema);
+
+        if (existing != null && existing != schema) {
+            throw new IllegalArgumentException("Schema id " + schema.id() + " of " + schema.name()
+                    + " is already taken by " + existing.name());
+        }
+    }
+
+    public NameTable names() {
+        return names;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public <T> Message encode(Schema<T> schema, T value) {
+        try (MessageOutputStream out = MessageOutputStream.pooled()) {
+            if (!enabled) {
+                schema.writeLegacy(value, out);
+                return out.toMessage();
+            }
+
+            out.writeVarInt32(schema.id());
+            out.writeVarInt32(schema.version());
+            schema.write(value, out, names);
+
+            return out.toMessage(MessageType.SCHEMA);
+        } catch (IOException ex) {
+            throw new MineCloudException("Could not encode " + schema.name() + " message", ex);
+        }
+    }
+
+    public <T> T decode(Schema<T> schema, Message message) throws IOException {
+        MessageInputStream in = message.contents();
+
+        switch (message.type()) {
+            case BINARY:
+                return schema.readLegacy(in);
+
+            case SCHEMA:
+                int id = in.readVarInt32();
+
+                if (id != schema.id()) {
+                    throw new IOException("Expected a " + schema.name() + " message, got schema " + id);
+                }
+
+                return schema.read(in, names, in.readVarInt32());
+
+            default:
+                throw new IOException("Cannot decode a " + message.type() + " message as " + schema.name());
+        }
+    }
+
+    /**
+     * Decodes a schema message with whichever registered schema it names
+     */
+    public Object decode(Message message) throws IOException {
+        if (message.type() != MessageType.SCHEMA) {
+            throw new IOException("Cannot decode a " + message.type() + " message without its schema");
+        }
+
+        MessageInputStream in = message.contents();
+        int id = in.readVarInt32();
+        Schema<?> schema = schemas.get(id);
+
+        if (schema == null) {
+            throw new IOException("Unknown schema " + id);
+        }
+
+        return schema.read(in, names, in.readVarInt32());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis.msg.schema;
+
+import io.minecloud.db.redis.RedisDatabase;
+import redis.clients.jedis.Jedis;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns names which are shared by the whole cloud, like networks, types and nodes, as
+ * small integers so messages carry a varint instead of the name. Ids are handed out
+ * through Redis and never change, so both directions are cached for good.
+ */
+public final class NameTable {
+    private static final String NAMES = "name-table";
+    private static final String IDS = "name-table:ids";
+    private static final String NEXT = "name-table:next";
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    private final RedisDatabase redis;
+
+    private NameTable(RedisDatabase redis) {
+        this.redis = redis;
+    }
+
+    public static NameTable create(RedisDatabase redis) {
+        return new NameTable(redis);
+    }
+
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+
+        if (id != null) {
+            return id;
+        }
+
+        try (Jedis jedis = redis.grabResource()) {
+            String stored = jedis.hget(NAMES, name);
+
+            if (stored == null) {
+                String next = String.valueOf(jedis.incr(NEXT));
+
+                //The reverse entry goes first so nobody can see an id which can't be resolved,
+                //if another writer wins the name the counter value is simply skipped
+                jedis.hset(IDS, next, name);
+                stored = jedis.hsetnx(NAMES, name, next) == 1 ? next : jedis.hget(NAMES, name);
+            }
+
+            id = Integer.parseInt(stored);
+        }
+
+        remember(name, id);
+        return id;
+    }
+
+    public String nameOf(int id) throws IOException {
+        String name = names.get(id);
+
+        if (name != null) {
+            return name;
+        }
+
+        try (Jedis jedis = redis.grabResource()) {
+            name = jedis.hget(IDS, String.valueOf(id));
+        }
+
+        if (name == null) {
+            throw new IOException("Unknown name id " + id);
+        }
+
+        remember(name, id);
+        return name;
+    }
+
+    private void remember(String name, int id) {
+        ids.put(name, id);
+        names.put(id, name);
+    }
+}
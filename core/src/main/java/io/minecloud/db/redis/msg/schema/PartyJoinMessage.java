@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis.msg.schema;
+
+import io.minecloud.annotation.Immutable;
+import io.minecloud.db.redis.msg.binary.MessageInputStream;
+import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sends a group of players to the same server, published on {@code cardinal}
+ */
+@Immutable
+public final class PartyJoinMessage {
+    public static final Schema<PartyJoinMessage> SCHEMA = new Schema<PartyJoinMessage>() {
+        @Override
+        public int id() {
+            return 6;
+        }
+
+        @Override
+        public int version() {
+            return 1;
+        }
+
+        @Override
+        public String name() {
+            return "partyjoin";
+        }
+
+        @Override
+        public void write(PartyJoinMessage value, MessageOutputStream out, NameTable names) throws IOException {
+            out.writeString(value.server);
+            out.writeVarInt32(value.players.size());
+
+            for (UUID player : value.players) {
+                out.writeUuid(player);
+            }
+        }
+
+        @Override
+        public PartyJoinMessage read(MessageInputStream in, NameTable names, int version) throws IOException {
+            String server = in.readString();
+            int size = in.readVarInt32();
+            List<UUID> players = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                players.add(in.readUuid());
+            }
+
+            return new PartyJoinMessage(server, players);
+        }
+
+        @Override
+        public void writeLegacy(PartyJoinMessage value, MessageOutputStream out) throws IOException {
+            out.writeString(name());
+            out.writeString(value.server);
+            out.writeVarInt32(value.players.size());
+
+            for (UUID player : value.players) {
+                out.writeString(player.toString());
+            }
+        }
+
+        @Override
+        public PartyJoinMessage readLegacy(MessageInputStream in) throws IOException {
+            if (!in.readString().equals(name())) {
+                throw new IOException("Not a party join message");
+            }
+
+            String server = in.readString();
+            int size = in.readVarInt32();
+            List<UUID> players = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                players.add(UUID.fromString(in.readString()));
+            }
+
+            return new PartyJoinMessage(server, players);
+        }
+    };
+
+    private final String server;
+    private final List<UUID> players;
+
+    private PartyJoinMessage(String server, List<UUID> players) {
+        this.server = server;
+        this.players = Collections.unmodifiableList(players);
+    }
+
+    public static PartyJoinMessage create(String server, List<UUID> players) {
+        return new PartyJoinMessage(server, new ArrayList<>(players));
+    }
+
+    public String server() {
+        return server;
+    }
+
+    public List<UUID> players() {
+        return players;
+    }
+}
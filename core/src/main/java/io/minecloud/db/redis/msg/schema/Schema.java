@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis.msg.schema;
+
+import io.minecloud.db.redis.msg.binary.MessageInputStream;
+import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+
+import java.io.IOException;
+
+/**
+ * Describes how one kind of message is laid out, both in the compact schema form and in
+ * the hand-written form it replaces. A new version may only append fields; readers are
+ * given the version the writer used so they can leave out fields it didn't have, and
+ * simply stop reading before fields newer than themselves.
+ */
+public interface Schema<T> {
+    /**
+     * @return the id written in front of every message of this schema, unique per codec
+     */
+    int id();
+
+    int version();
+
+    String name();
+
+    void write(T value, MessageOutputStream out, NameTable names) throws IOException;
+
+    T read(MessageInputStream in, NameTable names, int version) throws IOException;
+
+    void writeLegacy(T value, MessageOutputStream out) throws IOException;
+
+    T readLegacy(MessageInputStream in) throws IOException;
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis.msg.schema;
+
+import io.minecloud.annotation.Immutable;
+import io.minecloud.db.redis.msg.binary.MessageInputStream;
+import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+import io.minecloud.models.server.ServerMetadata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Asks a node to deploy a server, published on {@code server-create}
+ */
+@Immutable
+public final class ServerCreateMessage {
+    public static final Schema<ServerCreateMessage> SCHEMA = new Schema<ServerCreateMessage>() {
+        @Override
+        public int id() {
+            return 1;
+        }
+
+        @Override
+        public int version() {
+            return 1;
+        }
+
+        @Override
+        public String name() {
+            return "server-create";
+        }
+
+        @Override
+        public void write(ServerCreateMessage value, MessageOutputStream out, NameTable names) throws IOException {
+            out.writeVarInt32(names.idOf(value.node));
+            out.writeVarInt32(names.idOf(value.network));
+            out.writeVarInt32(names.idOf(value.type));
+            out.writeVarInt32(value.metadata.size());
+
+            for (ServerMetadata md : value.metadata) {
+                out.writeVarInt32(names.idOf(md.key()));
+                out.writeString(md.value());
+            }
+        }
+
+        @Override
+        public ServerCreateMessage read(MessageInputStream in, NameTable names, int version) throws IOException {
+            String node = names.nameOf(in.readVarInt32());
+            String network = names.nameOf(in.readVarInt32());
+            String type = names.nameOf(in.readVarInt32());
+            int size = in.readVarInt32();
+            List<ServerMetadata> metadata = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                metadata.add(new ServerMetadata(names.nameOf(in.readVarInt32()), in.readString()));
+            }
+
+            return new ServerCreateMessage(node, network, type, metadata);
+        }
+
+        @Override
+        public void writeLegacy(ServerCreateMessage value, MessageOutputStream out) throws IOException {
+            out.writeString(value.node);
+            out.writeString(value.network);
+            out.writeString(value.type);
+            out.writeVarInt32(value.metadata.size());
+
+            for (ServerMetadata md : value.metadata) {
+                out.writeString(md.key());
+                out.writeString(md.value());
+            }
+        }
+
+        @Override
+        public ServerCreateMessage readLegacy(MessageInputStream in) throws IOException {
+            String node = in.readString();
+            String network = in.readString();
+            String type = in.readString();
+            int size = in.readVarInt32();
+            List<ServerMetadata> metadata = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                metadata.add(new ServerMetadata(in.readString(), in.readString()));
+            }
+
+            return new ServerCreateMessage(node, network, type, metadata);
+        }
+    };
+
+    private final String node;
+    private final String network;
+    private final String type;
+    private final List<ServerMetadata> metadata;
+
+    private ServerCreateMessage(String node, String network, String type, List<ServerMetadata> metadata) {
+        this.node = node;
+        this.network = network;
+        this.type = type;
+        this.metadata = Collections.unmodifiableList(metadata);
+    }
+
+    public static ServerCreateMessage create(String node, String network, String type, List<ServerMetadata> metadata) {
+        return new ServerCreateMessage(node, network, type, new ArrayList<>(metadata));
+    }
+
+    public String node() {
+        return node;
+    }
+
+    public String network() {
+        return network;
+    }
+
+    public String type() {
+        return type;
+    }
+
+    public List<ServerMetadata> metadata() {
+        return metadata;
+    }
+}
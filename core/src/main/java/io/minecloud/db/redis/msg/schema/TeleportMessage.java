@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis.msg.schema;
+
+import io.minecloud.annotation.Immutable;
+import io.minecloud.db.redis.msg.binary.MessageInputStream;
+import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+
+import java.io.IOException;
+
+/**
+ * Moves a player, by name, to a server on {@code teleport} or to the emptiest server of a
+ * type on {@code teleport-type}. Server ids come and go so only type names are interned.
+ */
+@Immutable
+public final class TeleportMessage {
+    public static final Schema<TeleportMessage> TO_SERVER = new TeleportSchema(3, "teleport", false);
+    public static final Schema<TeleportMessage> TO_TYPE = new TeleportSchema(4, "teleport-type", true);
+
+    private final String player;
+    private final String target;
+
+    private TeleportMessage(String player, String target) {
+        this.player = player;
+        this.target = target;
+    }
+
+    public static TeleportMessage create(String player, String target) {
+        return new TeleportMessage(player, target);
+    }
+
+    public String player() {
+        return player;
+    }
+
+    /**
+     * @return the server id or type name to send the player to
+     */
+    public String target() {
+        return target;
+    }
+
+    private static final class TeleportSchema implements Schema<TeleportMessage> {
+        private final int id;
+        private final String name;
+        private final boolean intern;
+
+        private TeleportSchema(int id, String name, boolean intern) {
+            this.id = id;
+            this.name = name;
+            this.intern = intern;
+        }
+
+        @Override
+        public int id() {
+            return id;
+        }
+
+        @Override
+        public int version() {
+            return 1;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public void write(TeleportMessage value, MessageOutputStream out, NameTable names) throws IOException {
+            out.writeString(value.player);
+
+            if (intern) {
+                out.writeVarInt32(names.idOf(value.target));
+            } else {
+                out.writeString(value.target);
+            }
+        }
+
+        @Override
+        public TeleportMessage read(MessageInputStream in, NameTable names, int version) throws IOException {
+            String player = in.readString();
+
+            return new TeleportMessage(player, intern ? names.nameOf(in.readVarInt32()) : in.readString());
+        }
+
+        @Override
+        public void writeLegacy(TeleportMessage value, MessageOutputStream out) throws IOException {
+            out.writeString(value.player);
+            out.writeString(value.target);
+        }
+
+        @Override
+        public TeleportMessage readLegacy(MessageInputStream in) throws IOException {
+            return new TeleportMessage(in.readString(), in.readString());
+        }
+    }
+}
@@ -18,55 +18,54 @@ package io.minecloud.db.redis.pubsub;
 import io.minecloud.MineCloud;
 import io.minecloud.db.redis.msg.Message;
 import io.minecloud.db.redis.msg.MessageType;
-import org.json.JSONObject;
 import redis.clients.jedis.BinaryJedisPubSub;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Level;
 
 public final class ChannelPubSub extends BinaryJedisPubSub {
-    private final RedisChannel channel;
+    private final RedisSubscriber subscriber;
 
-    private ChannelPubSub(RedisChannel channel) {
-        this.channel = channel;
+    private ChannelPubSub(RedisSubscriber subscriber) {
+        this.subscriber = subscriber;
     }
 
-    static ChannelPubSub create(RedisChannel channel) {
-        return new ChannelPubSub(channel);
+    static ChannelPubSub create(RedisSubscriber subscriber) {
+        return new ChannelPubSub(subscriber);
     }
 
     @Override
     public void onMessage(byte[] c, byte[] message) {
-        InputStream stream = new ByteArrayInputStream(message);
-        MessageType type = MessageType.BINARY;
+        String name = new String(c, StandardCharsets.UTF_8);
+        RedisChannel channel = subscriber.channelBy(name);
 
-        try {
-            type = MessageType.values()[stream.read()];
-            byte[] data = new byte[message.length - 1];
+        if (channel == null) {
+            return; // the control channel, or one unsubscribed since
+        }
 
-            stream.read(data);
+        subscriber.dispatch(name, () -> handle(channel, message));
+    }
 
-            switch (type) {
-                case BINARY:
-                    channel.handle(Message.messageFrom(data));
-                    break;
+    private void handle(RedisChannel channel, byte[] message) {
+        if (message.length == 0) {
+            return;
+        }
 
-                case JSON:
-                    channel.handle(Message.messageFrom(new JSONObject(new String(data, Charset.forName("UTF-8")))));
-                    break;
+        int header = message[0] & 0xFF;
 
-                case STRING:
-                    channel.handle(Message.messageFrom(new String(data, Charset.forName("UTF-8"))));
-                    break;
-            }
-        } catch (IOException ex) {
-            MineCloud.logger().log(Level.WARNING,
-                    "Encountered an IOException while reading a " + type.name() + " message",
-                    ex);
+        if (header >= MessageType.values().length) {
+            MineCloud.logger().log(Level.WARNING, "Dropped a message of unknown type " + header
+                    + " on " + channel.channel());
+            return;
         }
+
+        // the message reads straight out of the received payload
+        channel.handle(Message.view(MessageType.values()[header], message, 1, message.length - 1));
+    }
+
+    @Override
+    public void onSubscribe(byte[] channel, int subscribedChannels) {
+        subscriber.subscribed();
     }
 
     @Override
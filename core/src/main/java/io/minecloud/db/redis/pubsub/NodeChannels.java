@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis.pubsub;
+
+import io.minecloud.db.redis.RedisDatabase;
+import redis.clients.jedis.Jedis;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Names the channels commands for a single node are sent on, {@code node:<name>:<command>},
+ * so only that node is woken up by them. Nodes announce that they listen on their own
+ * channels every few seconds; a node which hasn't, like one still running an older daemon,
+ * is sent commands on the broadcast channel it filters by node name instead.
+ */
+public final class NodeChannels {
+    private static final String REGISTRY = "node-channels";
+    private static final long STALE_AFTER = 60_000L;
+    private static final long REFRESH_INTERVAL = 10_000L;
+
+    private final RedisDatabase database;
+    private volatile Set<String> targeted = Collections.emptySet();
+    private volatile long lastRefresh;
+
+    private NodeChannels(RedisDatabase database) {
+        this.database = database;
+    }
+
+    public static NodeChannels create(RedisDatabase database) {
+        return new NodeChannels(database);
+    }
+
+    public static String channelOf(String node, String command) {
+        return "node:" + node + ":" + command;
+    }
+
+    /**
+     * @return the channel to send the command to the node on
+     */
+    public String channelFor(String node, String command) {
+        return targeted().contains(node) ? channelOf(node, command) : command;
+    }
+
+    /**
+     * Marks the node as listening on its own channels, to be repeated well within a minute
+     */
+    public void announce(String node) {
+        try (Jedis jedis = database.grabResource()) {
+            jedis.hset(REGISTRY, node, String.valueOf(System.currentTimeMillis()));
+        }
+    }
+
+    private Set<String> targeted() {
+        long now = System.currentTimeMillis();
+
+        if (now - lastRefresh < REFRESH_INTERVAL) {
+            return targeted;
+        }
+
+        Map<String, String> nodes;
+
+        try (Jedis jedis = database.grabResource()) {
+            nodes = jedis.hgetAll(REGISTRY);
+        }
+
+        Set<String> fresh = new HashSet<>();
+
+        nodes.forEach((node, announced) -> {
+            if (now - Long.parseLong(announced) < STALE_AFTER) {
+                fresh.add(node);
+            }
+        });
+
+        targeted = fresh;
+        lastRefresh = now;
+        return fresh;
+    }
+}
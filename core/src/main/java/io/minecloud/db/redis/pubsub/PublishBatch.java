@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis.pubsub;
+
+import io.minecloud.db.redis.RedisDatabase;
+import io.minecloud.db.redis.msg.Message;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects everything published on the current thread while it's open, along with the
+ * commands queued through the command bus, and sends it in a single pipelined round trip
+ * when closed, so bulk operations don't borrow a connection
+ * and wait for Redis once per message. Opening a batch while one is already open joins
+ * the outer batch, which flushes when it's closed.
+ *
+ * <pre>
+ * try (PublishBatch batch = redis.batch()) {
+ *     servers.forEach(Server::teleport);
+ * }
+ * </pre>
+ */
+public final class PublishBatch implements AutoCloseable {
+    private static final ThreadLocal<PublishBatch> CURRENT = new ThreadLocal<>();
+
+    private final RedisDatabase database;
+    private final List<byte[]> channels = new ArrayList<>();
+    private final List<byte[]> messages = new ArrayList<>();
+    private final List<byte[]> lists = new ArrayList<>();
+    private final List<byte[]> pushed = new ArrayList<>();
+    private int depth = 1;
+
+    private PublishBatch(RedisDatabase database) {
+        this.database = database;
+    }
+
+    public static PublishBatch open(RedisDatabase database) {
+        PublishBatch batch = CURRENT.get();
+
+        if (batch != null) {
+            batch.depth++;
+            return batch;
+        }
+
+        batch = new PublishBatch(database);
+        CURRENT.set(batch);
+        return batch;
+    }
+
+    /**
+     * @return the batch open on this thread, or null
+     */
+    public static PublishBatch current() {
+        return CURRENT.get();
+    }
+
+    public void add(byte[] channel, Message message) {
+        channels.add(channel);
+        messages.add(message.raw());
+    }
+
+    /**
+     * Queues an LPUSH onto the list, sent in the same round trip as the messages
+     */
+    public void push(byte[] list, byte[] value) {
+        lists.add(list);
+        pushed.add(value);
+    }
+
+    public int size() {
+        return messages.size() + pushed.size();
+    }
+
+    /**
+     * Sends what has been collected so far, the batch stays open
+     */
+    public void flush() {
+        if (messages.isEmpty() && pushed.isEmpty()) {
+            return;
+        }
+
+        try (Jedis jedis = database.grabResource()) {
+            Pipeline pipeline = jedis.pipelined();
+
+            for (int i = 0; i < messages.size(); i++) {
+                pipeline.publish(channels.get(i), messages.get(i));
+            }
+
+            for (int i = 0; i < pushed.size(); i++) {
+                pipeline.lpush(lists.get(i), pushed.get(i));
+            }
+
+            pipeline.sync();
+        } finally {
+            channels.clear();
+            messages.clear();
+            lists.clear();
+            pushed.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (--depth > 0) {
+            return;
+        }
+
+        CURRENT.remove();
+        flush();
+    }
+}
@@ -17,23 +17,20 @@ package io.minecloud.db.redis.pubsub;
 
 import io.minecloud.db.redis.RedisDatabase;
 import io.minecloud.db.redis.msg.Message;
-import redis.clients.jedis.Jedis;
 
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 public abstract class RedisChannel {
     protected final RedisDatabase database;
     protected final String channel;
+    private final byte[] channelBytes;
 
     protected RedisChannel(String channel, RedisDatabase database) {
         this.database = database;
         this.channel = channel;
+        this.channelBytes = channel.getBytes(StandardCharsets.UTF_8);
 
-        new Thread(() -> {
-            try (Jedis resource = database.grabResource()) {
-                resource.subscribe(ChannelPubSub.create(this), channel.getBytes(Charset.forName("UTF-8")));
-            }
-        }, "MineCloud - Channel '" + channel + " Thread").start();
+        database.subscriber().subscribe(this);
     }
 
     public String channel() {
@@ -41,9 +38,14 @@ public abstract class RedisChannel {
     }
 
     public void publish(Message message) {
-        try (Jedis resource = database.grabResource()) {
-            resource.publish(channel.getBytes(Charset.forName("UTF-8")), message.raw());
-        }
+        database.publish(channelBytes, message);
+    }
+
+    /**
+     * Stops receiving messages on this channel, publishing keeps working
+     */
+    public void unsubscribe() {
+        database.subscriber().unsubscribe(channel);
     }
 
     public abstract void handle(Message message);
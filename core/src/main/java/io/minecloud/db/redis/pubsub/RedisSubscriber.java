@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.db.redis.pubsub;
+
+import io.minecloud.MineCloud;
+import io.minecloud.db.redis.RedisDatabase;
+import redis.clients.jedis.Jedis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * <p>
+ * Receives the messages of every channel of a process over one dedicated connection,
+ * handing each to the {@link RedisChannel} registered under its name. Channels can be
+ * subscribed and unsubscribed at any time; the connection is re-established with all
+ * registered channels if it drops.
+ * </p>
+ * <p>
+ * Callbacks run on a small, bounded set of lanes. All messages of a channel go through
+ * the same lane so they are handled in the order they were published. When a lane is
+ * full the subscriber thread handles the message itself, slowing reads down instead
+ * of queueing without bound.
+ * </p>
+ */
+public final class RedisSubscriber {
+    // subscribed to from the start, so the connection can be blocked in SUBSCRIBE before any channel exists
+    private static final byte[] CONTROL_CHANNEL = "minecloud-subscriber".getBytes(StandardCharsets.UTF_8);
+    private static final int LANES = 4;
+    private static final int LANE_CAPACITY = 1024;
+    private static final long RECONNECT_DELAY = 1000L;
+    private static final long MAX_RECONNECT_DELAY = 30_000L;
+
+    private final Map<String, RedisChannel> channels = new ConcurrentHashMap<>();
+    private final ExecutorService[] lanes = new ExecutorService[LANES];
+    private final RedisDatabase database;
+    private volatile ChannelPubSub pubSub;
+    private volatile CountDownLatch subscribed = new CountDownLatch(1);
+
+    private RedisSubscriber(RedisDatabase database) {
+        this.database = database;
+
+        for (int i = 0; i < LANES; i++) {
+            int lane = i;
+
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(LANE_CAPACITY),
+                    (runnable) -> {
+                        Thread thread = new Thread(runnable, "MineCloud - Redis Callbacks #" + lane);
+
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    public static RedisSubscriber create(RedisDatabase database) {
+        RedisSubscriber subscriber = new RedisSubscriber(database);
+        Thread thread = new Thread(subscriber::listen, "MineCloud - Redis Subscriber");
+
+        thread.setDaemon(true);
+        thread.start();
+        return subscriber;
+    }
+
+    public void subscribe(RedisChannel channel) {
+        if (channels.put(channel.channel(), channel) != null) {
+            return;
+        }
+
+        ChannelPubSub current = awaitSubscribed();
+
+        if (current != null) {
+            current.subscribe(channel.channel().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public void unsubscribe(String channel) {
+        if (channels.remove(channel) == null) {
+            return;
+        }
+
+        ChannelPubSub current = awaitSubscribed();
+
+        if (current != null) {
+            current.unsubscribe(channel.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    RedisChannel channelBy(String name) {
+        return channels.get(name);
+    }
+
+    void dispatch(String channel, Runnable handler) {
+        lanes[(channel.hashCode() & Integer.MAX_VALUE) % LANES].execute(handler);
+    }
+
+    void subscribed() {
+        subscribed.countDown();
+    }
+
+    /**
+     * Waits a moment for the connection to be in SUBSCRIBE mode. Channels registered while
+     * it is down are picked up when it comes back, so giving up here loses nothing.
+     */
+    private ChannelPubSub awaitSubscribed() {
+        try {
+            subscribed.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        ChannelPubSub current = pubSub;
+
+        return current != null && current.isSubscribed() ? current : null;
+    }
+
+    private void listen() {
+        long delay = 0;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            //Published before the names are read, so a channel registered meanwhile is either
+            //in the names or subscribed through this pubsub once it is ready
+            pubSub = ChannelPubSub.create(this);
+
+            try (Jedis jedis = database.connect()) {
+                List<byte[]> names = new ArrayList<>();
+
+                names.add(CONTROL_CHANNEL);
+                channels.keySet().forEach((channel) -> names.add(channel.getBytes(StandardCharsets.UTF_8)));
+
+                jedis.subscribe(pubSub, names.toArray(new byte[names.size()][]));
+                delay = RECONNECT_DELAY;
+            } catch (RuntimeException ex) {
+                //Back off only while reconnecting keeps failing, not after a subscription which worked
+                delay = subscribed.getCount() == 0 ? RECONNECT_DELAY
+                        : Math.min(Math.max(delay * 2, RECONNECT_DELAY), MAX_RECONNECT_DELAY);
+                MineCloud.logger().log(Level.WARNING, "Lost the Redis subscription, reconnecting in " + delay + "ms", ex);
+            } finally {
+                pubSub = null;
+                subscribed = new CountDownLatch(1);
+            }
+
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ignored) {
+                return;
+            }
+        }
+    }
+}
@@ -15,15 +15,23 @@
  */
 package io.minecloud.models.bungee;
 
+import io.minecloud.MineCloud;
 import io.minecloud.db.mongo.model.MongoEntity;
 import io.minecloud.models.bungee.type.BungeeType;
 import io.minecloud.models.network.Network;
 import io.minecloud.models.nodes.Node;
 import lombok.Setter;
 import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Field;
+import org.mongodb.morphia.annotations.Index;
+import org.mongodb.morphia.annotations.Indexes;
 import org.mongodb.morphia.annotations.Reference;
 
 @Entity(value = "bungees", noClassnameStored = true)
+@Indexes({
+        @Index(fields = @Field("node")),
+        @Index(fields = {@Field("network"), @Field("type")})
+})
 public class Bungee extends MongoEntity {
     @Reference(lazy = true)
     @Setter
@@ -42,7 +50,7 @@ public class Bungee extends MongoEntity {
     }
 
     public BungeeType type() {
-        return type;
+        return MineCloud.instance().mongo().cached(type, BungeeType.class);
     }
 
     public String containerId() {
@@ -15,6 +15,7 @@
  */
 package io.minecloud.models.bungee.type;
 
+import io.minecloud.MineCloud;
 import io.minecloud.db.mongo.model.MongoEntity;
 import io.minecloud.models.nodes.type.NodeType;
 import io.minecloud.models.plugins.Plugin;
@@ -54,7 +55,7 @@ public class BungeeType extends MongoEntity {
     }
 
     public NodeType preferredNode() {
-        return preferredNode;
+        return MineCloud.instance().mongo().cached(preferredNode, NodeType.class);
     }
     
     public String motd() {
@@ -18,10 +18,13 @@ package io.minecloud.models.bungee.type;
 import io.minecloud.db.mongo.AbstractMongoRepository;
 import org.mongodb.morphia.Datastore;
 
+import java.util.concurrent.TimeUnit;
+
 public class BungeeTypeRepository extends AbstractMongoRepository<BungeeType> {
 
     private BungeeTypeRepository(Datastore datastore) {
         super(BungeeType.class, datastore);
+        enableCache(5, TimeUnit.MINUTES, 256);
     }
 
     public static BungeeTypeRepository create(Datastore datastore) {
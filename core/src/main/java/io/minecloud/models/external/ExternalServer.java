@@ -15,20 +15,21 @@
  */
 package io.minecloud.models.external;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Field;
+import org.mongodb.morphia.annotations.Index;
+import org.mongodb.morphia.annotations.Indexes;
 import org.mongodb.morphia.annotations.Reference;
 
 import io.minecloud.MineCloud;
-import io.minecloud.MineCloudException;
 import io.minecloud.db.mongo.model.MongoEntity;
 import io.minecloud.db.redis.RedisDatabase;
-import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+import io.minecloud.db.redis.msg.schema.TeleportMessage;
 import io.minecloud.db.redis.pubsub.SimpleRedisChannel;
 import io.minecloud.models.network.Network;
 import io.minecloud.models.player.PlayerData;
@@ -40,6 +41,12 @@ import lombok.Setter;
  * but not controlled by MineCloud
  */
 @Entity(value = "external-servers", noClassnameStored = true)
+@Indexes({
+        @Index(fields = @Field("network")),
+        @Index(fields = @Field("type")),
+        @Index(fields = @Field("onlinePlayers.id")),
+        @Index(fields = @Field("onlinePlayers.name"))
+})
 public class ExternalServer extends MongoEntity {
     @Reference(lazy = true)
     @Setter
@@ -67,7 +74,7 @@ public class ExternalServer extends MongoEntity {
     }
 
     public ExternalServerType type() {
-        return type;
+        return MineCloud.instance().mongo().cached(type, ExternalServerType.class);
     }
 
     public long startTime() {
@@ -152,12 +159,6 @@ public class ExternalServer extends MongoEntity {
             redis.addChannel(SimpleRedisChannel.create("teleport", redis));
         }
 
-        try (MessageOutputStream mos = new MessageOutputStream()){
-            mos.writeString(player);
-            mos.writeString(name());
-            redis.channelBy("teleport").publish(mos.toMessage());
-        } catch (IOException ex) {
-            throw new MineCloudException("Could not encode teleport message", ex);
-        }
+        redis.channelBy("teleport").publish(redis.codec().encode(TeleportMessage.TO_SERVER, TeleportMessage.create(player, name())));
     }
 }
@@ -18,10 +18,13 @@ package io.minecloud.models.external;
 import io.minecloud.db.mongo.AbstractMongoRepository;
 import org.mongodb.morphia.Datastore;
 
+import java.util.concurrent.TimeUnit;
+
 public class ExternalServerTypeRepository extends AbstractMongoRepository<ExternalServerType> {
     
     private ExternalServerTypeRepository(Datastore datastore) {
         super(ExternalServerType.class, datastore);
+        enableCache(5, TimeUnit.MINUTES, 256);
     }
 
     public static ExternalServerTypeRepository create(Datastore datastore) {
@@ -17,7 +17,11 @@ package io.minecloud.models.network;
 
 import io.minecloud.MineCloud;
 import io.minecloud.db.mongo.model.MongoEntity;
+import io.minecloud.db.redis.RedisDatabase;
+import io.minecloud.db.redis.msg.Message;
 import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+import io.minecloud.db.redis.msg.schema.BungeeCreateMessage;
+import io.minecloud.db.redis.msg.schema.ServerCreateMessage;
 import io.minecloud.models.bungee.Bungee;
 import io.minecloud.models.bungee.BungeeRepository;
 import io.minecloud.models.bungee.type.BungeeType;
@@ -38,6 +42,7 @@ import org.mongodb.morphia.annotations.Reference;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -67,15 +72,10 @@ public class Network extends MongoEntity {
             throw new IllegalArgumentException("Cannot deploy " + type + " on network; is not a valid network bungee type!");
         }
 
-        try (MessageOutputStream os = new MessageOutputStream()) {
-            os.writeString(node.name());
-            os.writeString(name());
-            os.writeString(type.name());
-            MineCloud.instance().redis().channelBy("bungee-create").publish(os.toMessage());
-        } catch (IOException e) {
-            MineCloud.logger().log(Level.SEVERE, "Encountered an odd exception whilst encoding a message", e);
-            return;
-        }
+        RedisDatabase redis = MineCloud.instance().redis();
+
+        send(node, "bungee-create", redis.codec().encode(BungeeCreateMessage.SCHEMA,
+                BungeeCreateMessage.create(node.name(), name(), type.name())));
     }
 
     public Node deployServer(ServerType type, ServerMetadata... metadata) {
@@ -83,22 +83,24 @@ public class Network extends MongoEntity {
 
         Node node = nodeRepo.findNode(this, type.preferredNode(), type.dedicatedRam());
 
-        try (MessageOutputStream os = new MessageOutputStream()) {
-            os.writeString(node.name());
-            os.writeString(name());
-            os.writeString(type.name());
-            os.writeVarInt32(metadata.length);
-
-            for (ServerMetadata md : metadata) {
-                os.writeString(md.key());
-                os.writeString(md.value());
-            }
-            MineCloud.instance().redis().channelBy("server-create").publish(os.toMessage());
-        } catch (IOException e) {
-            MineCloud.logger().log(Level.SEVERE, "Encountered an odd exception whilst encoding a message", e);
-        }
+        RedisDatabase redis = MineCloud.instance().redis();
+
+        send(node, "server-create", redis.codec().encode(ServerCreateMessage.SCHEMA,
+                ServerCreateMessage.create(node.name(), name(), type.name(), Arrays.asList(metadata))));
         return node;
     }
+
+    /**
+     * Queues the command on the node's command bus, or publishes it to nodes which don't take
+     * commands from the bus yet
+     */
+    private void send(Node node, String command, Message message) {
+        RedisDatabase redis = MineCloud.instance().redis();
+
+        if (!redis.commands().send(node.name(), command, message)) {
+            redis.publish(redis.nodeChannels().channelFor(node.name(), command), message);
+        }
+    }
     
     /**
      * Sets up database entries for an external server. This
@@ -200,7 +202,8 @@ public class Network extends MongoEntity {
         return (int) repository.count(repository.createQuery()
                 .field("network").equal(this)
                 .field("type").equal(type)
-                .field("joinable").equal(true));
+                .field("joinable").equal(true)
+                .field("standby").notEqual(true));
     }
 
     public int bungeesOnline() {
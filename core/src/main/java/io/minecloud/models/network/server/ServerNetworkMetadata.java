@@ -15,6 +15,7 @@
  */
 package io.minecloud.models.network.server;
 
+import io.minecloud.MineCloud;
 import io.minecloud.models.server.type.ServerType;
 import lombok.Setter;
 import org.mongodb.morphia.annotations.Reference;
@@ -27,9 +28,12 @@ public class ServerNetworkMetadata {
     private int minimumAmount;
     @Setter
     private int maximumAmount;
+    /** Amount of started, non-joinable servers kept ready to be promoted */
+    @Setter
+    private int warmPool;
 
     public ServerType type() {
-        return type;
+        return MineCloud.instance().mongo().cached(type, ServerType.class);
     }
 
     public int minimumAmount() {
@@ -38,4 +42,8 @@ public class ServerNetworkMetadata {
     public int maximumAmount() {
         return maximumAmount;
     }
+
+    public int warmPool() {
+        return warmPool;
+    }
 }
@@ -16,6 +16,7 @@
 package io.minecloud.models.nodes;
 
 import io.minecloud.MineCloud;
+import io.minecloud.db.mongo.Filter;
 import io.minecloud.db.mongo.model.MongoEntity;
 import io.minecloud.models.bungee.Bungee;
 import io.minecloud.models.nodes.type.NodeType;
@@ -26,7 +27,6 @@ import org.mongodb.morphia.annotations.Reference;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Entity(value = "nodes", noClassnameStored = true)
 public class Node extends MongoEntity {
@@ -55,7 +55,7 @@ public class Node extends MongoEntity {
     }
 
     public NodeType type() {
-        return type;
+        return MineCloud.instance().mongo().cached(type, NodeType.class);
     }
 
     public List<CoreMetadata> coreMetadata() {
@@ -83,10 +83,10 @@ public class Node extends MongoEntity {
     public double allocatedRam() {
         Collection<Server> servers = MineCloud.instance().mongo()
                 .repositoryBy(Server.class)
-                .findAll((server) -> server.node().name().equals(name()));
+                .findAll(Filter.<Server>create().node(this));
         Collection<Bungee> bungees = MineCloud.instance().mongo()
                 .repositoryBy(Bungee.class)
-                .findAll((bungee) -> bungee.node().name().equals(name()));
+                .findAll(Filter.<Bungee>create().node(this));
         int ramUsed = 0;
 
         for (Server server : servers) {
@@ -105,14 +105,13 @@ public class Node extends MongoEntity {
     }
 
     public List<Server> servers() {
-        return MineCloud.instance().mongo().repositoryBy(Server.class).models()
-                .stream()
-                .filter((server) -> server.node().equals(this))
-                .collect(Collectors.toList());
+        return MineCloud.instance().mongo().repositoryBy(Server.class)
+                .findAll(Filter.<Server>create().node(this));
     }
 
     public int serverCount() {
-        return servers().size();
+        return (int) MineCloud.instance().mongo().repositoryBy(Server.class)
+                .count(Filter.<Server>create().node(this));
     }
 
     public void setName(String name) {
@@ -18,9 +18,12 @@ package io.minecloud.models.nodes.type;
 import io.minecloud.db.mongo.AbstractMongoRepository;
 import org.mongodb.morphia.Datastore;
 
+import java.util.concurrent.TimeUnit;
+
 public class NodeTypeRepository extends AbstractMongoRepository<NodeType> {
     private NodeTypeRepository(Datastore datastore) {
         super(NodeType.class, datastore);
+        enableCache(5, TimeUnit.MINUTES, 256);
     }
 
     public static NodeTypeRepository create(Datastore datastore) {
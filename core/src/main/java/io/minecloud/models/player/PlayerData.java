@@ -86,7 +86,7 @@ public class PlayerData {
             redis.addChannel(SimpleRedisChannel.create("cardinal", redis));
         }
 
-        try (MessageOutputStream mos = new MessageOutputStream()) {
+        try (MessageOutputStream mos = MessageOutputStream.pooled()) {
             mos.writeString("message"); //Subchannel
             mos.writeString(name());
             mos.writeString(jsonMessage);
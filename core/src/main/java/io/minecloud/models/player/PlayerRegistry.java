@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.models.player;
+
+import io.minecloud.db.redis.RedisDatabase;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps track of which server every online player is on. Entries are kept in Redis
+ * hashes keyed by both the player's UUID and their lowercased name, so lookups are a
+ * single key read instead of a scan over every server's player list.
+ *
+ * Entries are written by the Bukkit plugin as players join and quit; callers should
+ * treat a location as a hint and verify it against the server, as a crashed server
+ * may leave stale entries behind.
+ */
+public final class PlayerRegistry {
+    private static final String UUID_PREFIX = "player:";
+    private static final String NAME_PREFIX = "player-name:";
+    // only remove entries still pointing at the server the player quit from, a player
+    // switching servers may join the new server before quitting the old one
+    private static final String REMOVE_SCRIPT =
+            "local removed = 0 " +
+            "for i, key in ipairs(KEYS) do " +
+            "  if redis.call('hget', key, 'server') == ARGV[1] then " +
+            "    redis.call('del', key) " +
+            "    removed = removed + 1 " +
+            "  end " +
+            "end " +
+            "return removed";
+
+    private final RedisDatabase redis;
+
+    private PlayerRegistry(RedisDatabase redis) {
+        this.redis = redis;
+    }
+
+    public static PlayerRegistry create(RedisDatabase redis) {
+        return new PlayerRegistry(redis);
+    }
+
+    public void playerJoined(UUID id, String name, String server) {
+        Map<String, String> entry = new HashMap<>();
+
+        entry.put("uuid", id.toString());
+        entry.put("name", name);
+        entry.put("server", server);
+
+        try (Jedis jedis = redis.grabResource()) {
+            Pipeline pipeline = jedis.pipelined();
+
+            pipeline.hmset(uuidKey(id), entry);
+            pipeline.hmset(nameKey(name), entry);
+            pipeline.sync();
+        }
+    }
+
+    public void playerQuit(UUID id, String name, String server) {
+        try (Jedis jedis = redis.grabResource()) {
+            jedis.eval(REMOVE_SCRIPT, Arrays.asList(uuidKey(id), nameKey(name)),
+                    Collections.singletonList(server));
+        }
+    }
+
+    public PlayerLocation locationOf(UUID id) {
+        return locationBy(uuidKey(id));
+    }
+
+    public PlayerLocation locationOf(String name) {
+        return locationBy(nameKey(name));
+    }
+
+    private PlayerLocation locationBy(String key) {
+        Map<String, String> entry;
+
+        try (Jedis jedis = redis.grabResource()) {
+            entry = jedis.hgetAll(key);
+        }
+
+        if (entry == null || !entry.containsKey("uuid") || !entry.containsKey("server")) {
+            return null;
+        }
+
+        return new PlayerLocation(UUID.fromString(entry.get("uuid")), entry.get("name"), entry.get("server"));
+    }
+
+    private static String uuidKey(UUID id) {
+        return UUID_PREFIX + id;
+    }
+
+    private static String nameKey(String name) {
+        return NAME_PREFIX + name.toLowerCase();
+    }
+}
@@ -15,6 +15,7 @@
  */
 package io.minecloud.models.plugins;
 
+import io.minecloud.MineCloud;
 import lombok.AllArgsConstructor;
 import lombok.Setter;
 import org.mongodb.morphia.annotations.Reference;
@@ -33,7 +34,7 @@ public class Plugin {
     }
 
     public PluginType type() {
-        return type;
+        return MineCloud.instance().mongo().cached(type, PluginType.class);
     }
 
     public String version() {
@@ -18,9 +18,12 @@ package io.minecloud.models.plugins;
 import io.minecloud.db.mongo.AbstractMongoRepository;
 import org.mongodb.morphia.Datastore;
 
+import java.util.concurrent.TimeUnit;
+
 public class PluginTypeRepository extends AbstractMongoRepository<PluginType> {
     private PluginTypeRepository(Datastore ds) {
         super(PluginType.class, ds);
+        enableCache(5, TimeUnit.MINUTES, 256);
     }
 
     public static PluginTypeRepository create(Datastore ds) {
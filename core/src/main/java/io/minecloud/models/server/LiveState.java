@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.models.server;
+
+import io.minecloud.annotation.Immutable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The telemetry a running server reports every few seconds, kept in Redis by the
+ * {@link LiveStateRegistry} rather than on the server's document
+ */
+@Immutable
+public final class LiveState {
+    private final String server;
+    private final String network;
+    private final String type;
+    private final double tps;
+    private final int ramUsage;
+    private final int players;
+    private final int maxPlayers;
+    private final boolean joinable;
+    private final long updated;
+
+    private LiveState(String server, String network, String type, double tps, int ramUsage, int players,
+                      int maxPlayers, boolean joinable, long updated) {
+        this.server = server;
+        this.network = network;
+        this.type = type;
+        this.tps = tps;
+        this.ramUsage = ramUsage;
+        this.players = players;
+        this.maxPlayers = maxPlayers;
+        this.joinable = joinable;
+        this.updated = updated;
+    }
+
+    public static LiveState create(String server, String network, String type, double tps, int ramUsage,
+                                   int players, int maxPlayers, boolean joinable) {
+        return new LiveState(server, network, type, tps, ramUsage, players, maxPlayers, joinable,
+                System.currentTimeMillis());
+    }
+
+    static LiveState from(String server, Map<String, String> fields) {
+        if (fields == null || !fields.containsKey("updated")) {
+            return null;
+        }
+
+        try {
+            return new LiveState(server, fields.get("network"), fields.get("type"),
+                    Double.parseDouble(fields.get("tps")),
+                    Integer.parseInt(fields.get("ramUsage")),
+                    Integer.parseInt(fields.get("players")),
+                    Integer.parseInt(fields.getOrDefault("maxPlayers", "0")),
+                    Boolean.parseBoolean(fields.get("joinable")),
+                    Long.parseLong(fields.get("updated")));
+        } catch (NumberFormatException | NullPointerException ex) {
+            return null;
+        }
+    }
+
+    Map<String, String> fields() {
+        Map<String, String> fields = new HashMap<>();
+
+        fields.put("network", network);
+        fields.put("type", type);
+        fields.put("tps", String.valueOf(tps));
+        fields.put("ramUsage", String.valueOf(ramUsage));
+        fields.put("players", String.valueOf(players));
+        fields.put("maxPlayers", String.valueOf(maxPlayers));
+        fields.put("joinable", String.valueOf(joinable));
+        fields.put("updated", String.valueOf(updated));
+
+        return fields;
+    }
+
+    public String server() {
+        return server;
+    }
+
+    /**
+     * @return the name of the server's network
+     */
+    public String network() {
+        return network;
+    }
+
+    /**
+     * @return the name of the server's type
+     */
+    public String type() {
+        return type;
+    }
+
+    public double tps() {
+        return tps;
+    }
+
+    public int ramUsage() {
+        return ramUsage;
+    }
+
+    public int players() {
+        return players;
+    }
+
+    /**
+     * @return the most players the server takes, or 0 if there is no limit
+     */
+    public int maxPlayers() {
+        return maxPlayers;
+    }
+
+    public boolean joinable() {
+        return joinable;
+    }
+
+    /**
+     * @return when the server reported this state, in milliseconds since the epoch
+     */
+    public long updated() {
+        return updated;
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.models.server;
+
+import io.minecloud.db.redis.RedisDatabase;
+import io.minecloud.db.redis.RedisScript;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the live state of every running server in Redis, so the telemetry servers report
+ * every few seconds never touches their Mongo documents. Each server has a hash which
+ * expires when it stops reporting. Every network has a sorted set of its servers scored by
+ * when they last reported, and every type one scored by player count. Every type also has
+ * a sorted set of only its joinable servers, which players are routed through.
+ *
+ * Routing a player to a server takes a lease on one of its slots. The joinable set is
+ * scored by players plus outstanding leases, so a burst of logins spreads over the servers
+ * and never fills one past its type's maximum. Leases are released when the player joins,
+ * or expire after {@link #LEASE_TTL} ms if they never do.
+ *
+ * The documents keep the fields which rarely change; the first report of a server is
+ * still written to its document as that is what marks it ready.
+ */
+public final class LiveStateRegistry {
+    public static final long TTL = 30_000L;
+    public static final long LEASE_TTL = 15_000L;
+
+    private static final String SERVER_PREFIX = "live:server:";
+    private static final String NETWORK_PREFIX = "live:network:";
+    private static final String TYPE_PREFIX = "live:type:";
+    private static final String JOINABLE_PREFIX = "live:joinable:";
+    private static final String LEASE_PREFIX = "live:leases:";
+    private static final int CANDIDATES = 4;
+    private static final int RESERVE_PASSES = 3;
+    // picks the emptiest joinable server with a free slot out of the candidates read from the
+    // head of each type's set, and leases the slot to the player. KEYS holds the joinable
+    // sets followed by the state and leases of every candidate, ARGV the candidates as pairs
+    // of the index of their set and their name. Candidates whose state expired are dropped,
+    // their number is returned when none was picked so the caller reads the heads again.
+    private static final RedisScript RESERVE_SCRIPT = RedisScript.create(
+            "local sets = tonumber(ARGV[4]) " +
+            "local best, bestKey, bestScore, bestLeases " +
+            "local dropped = 0 " +
+            "for c = 1, (#KEYS - sets) / 2 do " +
+            "  local key = KEYS[tonumber(ARGV[3 + 2 * c])] " +
+            "  local server = ARGV[4 + 2 * c] " +
+            "  local score = redis.call('zscore', key, server) " +
+            "  if score then " +
+            "    local state = KEYS[sets + 2 * c - 1] " +
+            "    if redis.call('exists', state) == 1 then " +
+            "      score = tonumber(score) " +
+            "      local max = tonumber(redis.call('hget', state, 'maxPlayers') or '0') " +
+            "      if (max <= 0 or score < max) and (best == nil or score < bestScore) then " +
+            "        best, bestKey, bestScore, bestLeases = server, key, score, KEYS[sets + 2 * c] " +
+            "      end " +
+            "    else " +
+            "      redis.call('zrem', key, server) " +
+            "      dropped = dropped + 1 " +
+            "    end " +
+            "  end " +
+            "end " +
+            "if best == nil then return dropped end " +
+            "if redis.call('zadd', bestLeases, tonumber(ARGV[2]) + tonumber(ARGV[3]), ARGV[1]) == 1 then " +
+            "  redis.call('zincrby', bestKey, 1, best) " +
+            "end " +
+            "redis.call('pexpire', bestLeases, ARGV[3]) " +
+            "return best");
+    // rescores a reporting server by its players and the leases which haven't expired yet
+    private static final RedisScript RESCORE_SCRIPT = RedisScript.create(
+            "redis.call('zremrangebyscore', KEYS[2], '-inf', ARGV[3]) " +
+            "if ARGV[4] == 'true' then " +
+            "  redis.call('zadd', KEYS[1], tonumber(ARGV[2]) + redis.call('zcard', KEYS[2]), ARGV[1]) " +
+            "else " +
+            "  redis.call('zrem', KEYS[1], ARGV[1]) " +
+            "end");
+    // the player's lease, if any, becomes a player; without one the slot is taken directly
+    private static final RedisScript JOINED_SCRIPT = RedisScript.create(
+            "local leased = redis.call('zrem', KEYS[2], ARGV[2]) " +
+            "if redis.call('exists', KEYS[3]) == 1 then " +
+            "  redis.call('hincrby', KEYS[3], 'players', 1) " +
+            "end " +
+            "if leased == 0 and redis.call('zscore', KEYS[1], ARGV[1]) then " +
+            "  redis.call('zincrby', KEYS[1], 1, ARGV[1]) " +
+            "end");
+    // puts a reporting server in or out of its type's joinable set right away, scored like
+    // a report would; a server which never reported is left for its first report
+    private static final RedisScript JOINABLE_SCRIPT = RedisScript.create(
+            "if ARGV[3] == 'true' then " +
+            "  if redis.call('exists', KEYS[3]) == 1 then " +
+            "    redis.call('zremrangebyscore', KEYS[2], '-inf', ARGV[2]) " +
+            "    local players = tonumber(redis.call('hget', KEYS[3], 'players') or '0') " +
+            "    redis.call('zadd', KEYS[1], players + redis.call('zcard', KEYS[2]), ARGV[1]) " +
+            "    redis.call('hset', KEYS[3], 'joinable', 'true') " +
+            "  end " +
+            "else " +
+            "  redis.call('zrem', KEYS[1], ARGV[1]) " +
+            "  if redis.call('exists', KEYS[3]) == 1 then " +
+            "    redis.call('hset', KEYS[3], 'joinable', 'false') " +
+            "  end " +
+            "end");
+    private static final RedisScript QUIT_SCRIPT = RedisScript.create(
+            "if redis.call('exists', KEYS[2]) == 1 then " +
+            "  redis.call('hincrby', KEYS[2], 'players', -1) " +
+            "end " +
+            "if redis.call('zscore', KEYS[1], ARGV[1]) then " +
+            "  redis.call('zincrby', KEYS[1], -1, ARGV[1]) " +
+            "end");
+
+    private final RedisDatabase redis;
+
+    private LiveStateRegistry(RedisDatabase redis) {
+        this.redis = redis;
+    }
+
+    public static LiveStateRegistry create(RedisDatabase redis) {
+        return new LiveStateRegistry(redis);
+    }
+
+    /**
+     * Stores the state and the server's heartbeat in one round trip
+     */
+    public void report(LiveState state) {
+        String key = serverKey(state.server());
+        String networkKey = networkKey(state.network());
+        List<String> rescoreKeys = Arrays.asList(joinableKey(state.network(), state.type()),
+                leaseKey(state.server()));
+        List<String> rescoreArgs = Arrays.asList(state.server(), String.valueOf(state.players()),
+                String.valueOf(state.updated()), String.valueOf(state.joinable()));
+
+        try (Jedis jedis = redis.grabResource()) {
+            String rescore = RESCORE_SCRIPT.load(jedis);
+            Pipeline pipeline = jedis.pipelined();
+
+            pipeline.hmset(key, state.fields());
+            pipeline.expire(key, (int) (TTL / 1000));
+            pipeline.zadd(networkKey, state.updated(), state.server());
+            pipeline.zremrangeByScore(networkKey, 0, state.updated() - TTL);
+            pipeline.zadd(typeKey(state.network(), state.type()), state.players(), state.server());
+
+            Response<Object> rescored = pipeline.evalsha(rescore, rescoreKeys, rescoreArgs);
+
+            pipeline.hset("server:" + state.server(), "heartbeat", String.valueOf(state.updated()));
+            pipeline.sync();
+
+            try {
+                rescored.get();
+            } catch (JedisDataException ex) {
+                if (!RESCORE_SCRIPT.missing(ex)) {
+                    throw ex;
+                }
+
+                RESCORE_SCRIPT.eval(jedis, rescoreKeys, rescoreArgs);
+            }
+        }
+    }
+
+    public void remove(String server, String network, String type) {
+        try (Jedis jedis = redis.grabResource()) {
+            Pipeline pipeline = jedis.pipelined();
+
+            pipeline.del(serverKey(server));
+            pipeline.zrem(networkKey(network), server);
+            pipeline.zrem(typeKey(network, type), server);
+            pipeline.zrem(joinableKey(network, type), server);
+            pipeline.del(leaseKey(server));
+            pipeline.hdel("server:" + server, "heartbeat");
+            pipeline.sync();
+        }
+    }
+
+    /**
+     * Picks the joinable server with the fewest players and leases out of the given types
+     * of the network, and leases one of its slots to the player
+     *
+     * @return the name of the server, or null if none of the types has a free slot
+     */
+    public String reserve(String network, Collection<String> types, UUID player) {
+        if (types.isEmpty()) {
+            return null;
+        }
+
+        List<String> sets = types.stream()
+                .map((type) -> joinableKey(network, type))
+                .collect(Collectors.toList());
+
+        try (Jedis jedis = redis.grabResource()) {
+            for (int pass = 0; pass < RESERVE_PASSES; pass++) {
+                Pipeline pipeline = jedis.pipelined();
+                List<Response<Set<String>>> heads = new ArrayList<>();
+
+                sets.forEach((set) -> heads.add(pipeline.zrange(set, 0, CANDIDATES - 1)));
+                pipeline.sync();
+
+                List<String> keys = new ArrayList<>(sets);
+                List<String> args = new ArrayList<>(Arrays.asList(player.toString(),
+                        String.valueOf(System.currentTimeMillis()), String.valueOf(LEASE_TTL),
+                        String.valueOf(sets.size())));
+
+                for (int i = 0; i < heads.size(); i++) {
+                    for (String server : heads.get(i).get()) {
+                        keys.add(serverKey(server));
+                        keys.add(leaseKey(server));
+                        args.add(String.valueOf(i + 1));
+                        args.add(server);
+                    }
+                }
+
+                if (keys.size() == sets.size()) {
+                    return null;
+                }
+
+                Object result = RESERVE_SCRIPT.eval(jedis, keys, args);
+
+                if (result instanceof String) {
+                    return (String) result;
+                }
+
+                if (!(result instanceof Long) || (Long) result == 0) {
+                    return null; // every candidate was live, so every type is full
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Turns the player's lease on the server into one of its players, so the counts stay
+     * right until the server next reports
+     */
+    public void joined(String server, String network, String type, UUID player) {
+        try (Jedis jedis = redis.grabResource()) {
+            JOINED_SCRIPT.eval(jedis, Arrays.asList(joinableKey(network, type), leaseKey(server), serverKey(server)),
+                    Arrays.asList(server, player.toString()));
+        }
+    }
+
+    /**
+     * Opens or closes the server to routed players without waiting for its next report,
+     * for whatever changes its joinable or standby flag
+     */
+    public void setJoinable(String server, String network, String type, boolean joinable) {
+        try (Jedis jedis = redis.grabResource()) {
+            JOINABLE_SCRIPT.eval(jedis, Arrays.asList(joinableKey(network, type), leaseKey(server), serverKey(server)),
+                    Arrays.asList(server, String.valueOf(System.currentTimeMillis()), String.valueOf(joinable)));
+        }
+    }
+
+    public void quit(String server, String network, String type) {
+        try (Jedis jedis = redis.grabResource()) {
+            QUIT_SCRIPT.eval(jedis, Arrays.asList(joinableKey(network, type), serverKey(server)),
+                    Collections.singletonList(server));
+        }
+    }
+
+    public LiveState stateOf(String server) {
+        try (Jedis jedis = redis.grabResource()) {
+            return LiveState.from(server, jedis.hgetAll(serverKey(server)));
+        }
+    }
+
+    /**
+     * @return the states of the given servers which are still reporting, by server name
+     */
+    public Map<String, LiveState> statesOf(Collection<String> servers) {
+        Map<String, LiveState> states = new HashMap<>();
+
+        if (servers.isEmpty()) {
+            return states;
+        }
+
+        try (Jedis jedis = redis.grabResource()) {
+            read(jedis, servers).forEach((server, state) -> {
+                if (state != null) {
+                    states.put(server, state);
+                }
+            });
+        }
+
+        return states;
+    }
+
+    /**
+     * @return the states of every server in the network which reported within the TTL
+     */
+    public List<LiveState> statesOf(String network) {
+        try (Jedis jedis = redis.grabResource()) {
+            Set<String> servers = jedis.zrangeByScore(networkKey(network), System.currentTimeMillis() - TTL,
+                    Double.POSITIVE_INFINITY);
+
+            return read(jedis, servers).values().stream()
+                    .filter((state) -> state != null)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return the states of the type's servers in the network, emptiest first. Servers which
+     * stopped reporting are dropped from the type's set on the way.
+     */
+    public List<LiveState> statesOf(String network, String type) {
+        String typeKey = typeKey(network, type);
+
+        try (Jedis jedis = redis.grabResource()) {
+            Map<String, LiveState> states = read(jedis, jedis.zrange(typeKey, 0, -1));
+            List<String> expired = new ArrayList<>();
+            List<LiveState> live = new ArrayList<>();
+
+            states.forEach((server, state) -> {
+                if (state == null) {
+                    expired.add(server);
+                } else {
+                    live.add(state);
+                }
+            });
+
+            if (!expired.isEmpty()) {
+                jedis.zrem(typeKey, expired.toArray(new String[expired.size()]));
+            }
+
+            return live;
+        }
+    }
+
+    /**
+     * Replaces the RAM usage and player counts of the summaries with the reported ones,
+     * where the server is still reporting
+     */
+    public List<ServerSummary> overlay(List<ServerSummary> summaries) {
+        Map<String, LiveState> states = statesOf(summaries.stream()
+                .map(ServerSummary::name)
+                .collect(Collectors.toList()));
+
+        return summaries.stream()
+                .map((summary) -> states.containsKey(summary.name())
+                        ? summary.withLive(states.get(summary.name()))
+                        : summary)
+                .collect(Collectors.toList());
+    }
+
+    private static Map<String, LiveState> read(Jedis jedis, Collection<String> servers) {
+        Pipeline pipeline = jedis.pipelined();
+        Map<String, Response<Map<String, String>>> responses = new LinkedHashMap<>();
+
+        for (String server : servers) {
+            responses.put(server, pipeline.hgetAll(serverKey(server)));
+        }
+
+        pipeline.sync();
+
+        Map<String, LiveState> states = new LinkedHashMap<>();
+
+        responses.forEach((server, response) -> states.put(server, LiveState.from(server, response.get())));
+        return states;
+    }
+
+    private static String serverKey(String server) {
+        return SERVER_PREFIX + server;
+    }
+
+    private static String networkKey(String network) {
+        return NETWORK_PREFIX + network;
+    }
+
+    private static String typeKey(String network, String type) {
+        return TYPE_PREFIX + network + ":" + type;
+    }
+
+    private static String joinableKey(String network, String type) {
+        return JOINABLE_PREFIX + network + ":" + type;
+    }
+
+    private static String leaseKey(String server) {
+        return LEASE_PREFIX + server;
+    }
+}
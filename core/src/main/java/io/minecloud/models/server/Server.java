@@ -16,10 +16,9 @@
 package io.minecloud.models.server;
 
 import io.minecloud.MineCloud;
-import io.minecloud.MineCloudException;
 import io.minecloud.db.mongo.model.MongoEntity;
 import io.minecloud.db.redis.RedisDatabase;
-import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+import io.minecloud.db.redis.msg.schema.TeleportMessage;
 import io.minecloud.db.redis.pubsub.SimpleRedisChannel;
 import io.minecloud.models.network.Network;
 import io.minecloud.models.nodes.Node;
@@ -27,9 +26,11 @@ import io.minecloud.models.player.PlayerData;
 import io.minecloud.models.server.type.ServerType;
 import lombok.Setter;
 import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Field;
+import org.mongodb.morphia.annotations.Index;
+import org.mongodb.morphia.annotations.Indexes;
 import org.mongodb.morphia.annotations.Reference;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -41,6 +42,14 @@ import java.util.UUID;
  * Any inconsistent changes made to this class will be ignored.
  */
 @Entity(value = "servers", noClassnameStored = true)
+@Indexes({
+        @Index(fields = @Field("node")),
+        @Index(fields = {@Field("network"), @Field("type")}),
+        @Index(fields = {@Field("type"), @Field("number")}),
+        @Index(fields = @Field("containerId")),
+        @Index(fields = @Field("onlinePlayers.id")),
+        @Index(fields = @Field("onlinePlayers.name"))
+})
 public class Server extends MongoEntity {
     @Reference(lazy = true)
     @Setter
@@ -70,13 +79,16 @@ public class Server extends MongoEntity {
     /** Marks when the server is open to joining players. */
     @Setter
     private boolean joinable = true;
+    /** Marks a server parked in a network's warm pool, not joinable until the controller promotes it. */
+    @Setter
+    private boolean standby;
 
     public Network network() {
         return network;
     }
 
     public ServerType type() {
-        return type;
+        return MineCloud.instance().mongo().cached(type, ServerType.class);
     }
 
     public Node node() {
@@ -88,7 +100,11 @@ public class Server extends MongoEntity {
     }
     
     public boolean isJoinable() {
-        return joinable;
+        return joinable && !standby;
+    }
+
+    public boolean isStandby() {
+        return standby;
     }
 
     public List<PlayerData> onlinePlayers() {
@@ -177,12 +193,6 @@ public class Server extends MongoEntity {
             redis.addChannel(SimpleRedisChannel.create("teleport", redis));
         }
 
-        try (MessageOutputStream mos = new MessageOutputStream()){
-            mos.writeString(player);
-            mos.writeString(name());
-            redis.channelBy("teleport").publish(mos.toMessage());
-        } catch (IOException ex) {
-            throw new MineCloudException("Could not encode teleport message", ex);
-        }
+        redis.channelBy("teleport").publish(redis.codec().encode(TeleportMessage.TO_SERVER, TeleportMessage.create(player, name())));
     }
 }
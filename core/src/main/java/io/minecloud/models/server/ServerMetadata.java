@@ -16,6 +16,9 @@
 package io.minecloud.models.server;
 
 public class ServerMetadata {
+    /** Present on servers deployed into a network's warm pool */
+    public static final String STANDBY = "standby";
+
     private String key;
     private String value;
 
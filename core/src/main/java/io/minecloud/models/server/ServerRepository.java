@@ -16,14 +16,24 @@
 package io.minecloud.models.server;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBObject;
+import io.minecloud.MineCloud;
 import io.minecloud.db.mongo.AbstractMongoRepository;
 import io.minecloud.models.network.Network;
+import io.minecloud.models.player.PlayerData;
 import io.minecloud.models.server.type.ServerType;
 import org.mongodb.morphia.Datastore;
+import org.mongodb.morphia.mapping.Mapper;
+import org.mongodb.morphia.query.Query;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 public class ServerRepository extends AbstractMongoRepository<Server> {
     private ServerRepository(Datastore datastore) {
@@ -34,6 +44,19 @@ public class ServerRepository extends AbstractMongoRepository<Server> {
         return new ServerRepository(datastore);
     }
 
+    /**
+     * @return summaries of the matching servers, without their player lists or metadata
+     */
+    public List<ServerSummary> summaries(Query<Server> query) {
+        return project(query, ServerSummary.projection()).stream()
+                .map(ServerSummary::from)
+                .collect(Collectors.toList());
+    }
+
+    public CompletableFuture<List<ServerSummary>> summariesAsync(Query<Server> query) {
+        return async(() -> summaries(query));
+    }
+
     public int nextNumberFor(ServerType type) {
         List<Server> servers = find(createQuery().filter("type", type)).asList();
         int lastNumber = 0;
@@ -76,4 +99,99 @@ public class ServerRepository extends AbstractMongoRepository<Server> {
         return find(createQuery().field("onlinePlayers").hasThisElement(new BasicDBObject("name", name)))
                 .get();
     }
+
+    /**
+     * Applies players joining and quitting a server as partial updates instead of
+     * rewriting the whole document. Entries for every affected player are pulled
+     * before the joined players are pushed, so a rejoin never leaves a duplicate.
+     *
+     * @param serverId Id of the server the players are on
+     * @param joined Players which joined since the last update
+     * @param quit UUIDs of players which quit since the last update
+     */
+    public void updatePlayers(String serverId, Collection<PlayerData> joined, Collection<String> quit) {
+        if (joined.isEmpty() && quit.isEmpty()) {
+            return;
+        }
+
+        BasicDBObject query = new BasicDBObject("_id", serverId);
+        BulkWriteOperation bulk = collection.initializeOrderedBulkOperation();
+        List<String> ids = new ArrayList<>(quit);
+
+        joined.forEach((data) -> ids.add(data.uuid()));
+        bulk.find(query).updateOne(new BasicDBObject("$pull", new BasicDBObject("onlinePlayers",
+                new BasicDBObject("id", new BasicDBObject("$in", ids)))));
+
+        if (!joined.isEmpty()) {
+            bulk.find(query).updateOne(new BasicDBObject("$push", new BasicDBObject("onlinePlayers",
+                    new BasicDBObject("$each", toDBObjects(joined)))));
+        }
+
+        bulk.execute();
+    }
+
+    /**
+     * Replaces the online players of a server without touching any other field
+     */
+    public void setPlayers(String serverId, Collection<PlayerData> players) {
+        collection.update(new BasicDBObject("_id", serverId),
+                new BasicDBObject("$set", new BasicDBObject("onlinePlayers", toDBObjects(players))));
+    }
+
+    /**
+     * Updates the resource statistics of a server without touching any other field
+     *
+     * @return false if the server no longer exists in the database
+     */
+    public boolean updateStatistics(String serverId, int ramUsage, double tps) {
+        return collection.update(new BasicDBObject("_id", serverId),
+                new BasicDBObject("$set", new BasicDBObject("ramUsage", ramUsage).append("tps", tps)))
+                .getN() > 0;
+    }
+
+    /**
+     * Reads the joinable and standby flags of a server straight from its document
+     *
+     * @return whether the server takes players, or null if it no longer exists in the database
+     */
+    public Boolean joinable(String serverId) {
+        DBObject flags = collection.findOne(new BasicDBObject("_id", serverId),
+                new BasicDBObject("joinable", 1).append("standby", 1));
+
+        if (flags == null) {
+            return null;
+        }
+
+        return Boolean.TRUE.equals(flags.get("joinable")) && !Boolean.TRUE.equals(flags.get("standby"));
+    }
+
+    /**
+     * Opens or closes the server to joining players without touching any other field
+     *
+     * @return false if the server no longer exists in the database
+     */
+    public boolean setJoinable(String serverId, boolean joinable) {
+        return collection.update(new BasicDBObject("_id", serverId),
+                new BasicDBObject("$set", new BasicDBObject("joinable", joinable)))
+                .getN() > 0;
+    }
+
+    /**
+     * Takes a server out of the warm pool, making it joinable
+     *
+     * @return false if the server is gone or was already promoted
+     */
+    public boolean promote(String serverId) {
+        return collection.update(new BasicDBObject("_id", serverId).append("standby", true),
+                new BasicDBObject("$set", new BasicDBObject("standby", false)))
+                .getN() > 0;
+    }
+
+    private List<DBObject> toDBObjects(Collection<PlayerData> players) {
+        Mapper mapper = MineCloud.instance().mongo().morphia().getMapper();
+        List<DBObject> objects = new ArrayList<>(players.size());
+
+        players.forEach((data) -> objects.add(mapper.toDBObject(data)));
+        return objects;
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.models.server;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import io.minecloud.annotation.Immutable;
+import io.minecloud.db.mongo.AbstractMongoRepository;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * The fields of a server most lookups need, with the online players reduced to a count
+ * so the player list never leaves the database
+ */
+@Immutable
+public final class ServerSummary {
+    private final String name;
+    private final String network;
+    private final String type;
+    private final int port;
+    private final int ramUsage;
+    private final boolean joinable;
+    private final boolean standby;
+    private final int players;
+
+    private ServerSummary(String name, String network, String type, int port, int ramUsage, boolean joinable,
+                          boolean standby, int players) {
+        this.name = name;
+        this.network = network;
+        this.type = type;
+        this.port = port;
+        this.ramUsage = ramUsage;
+        this.joinable = joinable;
+        this.standby = standby;
+        this.players = players;
+    }
+
+    static DBObject projection() {
+        return new BasicDBObject("network", 1)
+                .append("type", 1)
+                .append("port", 1)
+                .append("ramUsage", 1)
+                .append("joinable", 1)
+                .append("standby", 1)
+                .append("players", new BasicDBObject("$size",
+                        new BasicDBObject("$ifNull", Arrays.asList("$onlinePlayers", Collections.emptyList()))));
+    }
+
+    static ServerSummary from(DBObject object) {
+        return new ServerSummary(String.valueOf(object.get("_id")),
+                AbstractMongoRepository.idOf(object.get("network")),
+                AbstractMongoRepository.idOf(object.get("type")),
+                intOf(object.get("port")),
+                intOf(object.get("ramUsage")),
+                Boolean.TRUE.equals(object.get("joinable")),
+                Boolean.TRUE.equals(object.get("standby")),
+                intOf(object.get("players")));
+    }
+
+    /**
+     * @return a copy with the RAM usage and player count the server last reported
+     */
+    ServerSummary withLive(LiveState state) {
+        return new ServerSummary(name, network, type, port, state.ramUsage(), joinable, standby, state.players());
+    }
+
+    private static int intOf(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : -1;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the name of the server's network
+     */
+    public String network() {
+        return network;
+    }
+
+    /**
+     * @return the name of the server's type
+     */
+    public String type() {
+        return type;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public int ramUsage() {
+        return ramUsage;
+    }
+
+    public boolean joinable() {
+        return joinable && !standby;
+    }
+
+    public boolean standby() {
+        return standby;
+    }
+
+    public int players() {
+        return players;
+    }
+}
@@ -16,10 +16,9 @@
 package io.minecloud.models.server.type;
 
 import io.minecloud.MineCloud;
-import io.minecloud.MineCloudException;
 import io.minecloud.db.mongo.model.MongoEntity;
 import io.minecloud.db.redis.RedisDatabase;
-import io.minecloud.db.redis.msg.binary.MessageOutputStream;
+import io.minecloud.db.redis.msg.schema.TeleportMessage;
 import io.minecloud.db.redis.pubsub.SimpleRedisChannel;
 import io.minecloud.models.nodes.type.NodeType;
 import io.minecloud.models.plugins.Plugin;
@@ -28,7 +27,6 @@ import lombok.Setter;
 import org.mongodb.morphia.annotations.Entity;
 import org.mongodb.morphia.annotations.Reference;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -65,6 +63,9 @@ public class ServerType extends MongoEntity {
     private String abbreviation = "";
     @Setter
     private int minPlayers = -1;
+    /** Deploys of types with a higher priority are started first when a node has a backlog */
+    @Setter
+    private int deployPriority = 0;
 
     public String name() {
         return entityId();
@@ -83,7 +84,7 @@ public class ServerType extends MongoEntity {
     }
 
     public NodeType preferredNode() {
-        return preferredNode;
+        return MineCloud.instance().mongo().cached(preferredNode, NodeType.class);
     }
 
     public String mod() {
@@ -141,6 +142,10 @@ public class ServerType extends MongoEntity {
         return timeOut;
     }
 
+    public int deployPriority() {
+        return deployPriority;
+    }
+
     public void setName(String name) {
         setId(name);
     }
@@ -152,12 +157,6 @@ public class ServerType extends MongoEntity {
             redis.addChannel(SimpleRedisChannel.create("teleport-type", redis));
         }
 
-        try (MessageOutputStream mos = new MessageOutputStream()){
-            mos.writeString(player);
-            mos.writeString(name());
-            redis.channelBy("teleport-type").publish(mos.toMessage());
-        } catch (IOException ex) {
-            throw new MineCloudException("Could not encode teleport message", ex);
-        }
+        redis.channelBy("teleport-type").publish(redis.codec().encode(TeleportMessage.TO_TYPE, TeleportMessage.create(player, name())));
     }
 }
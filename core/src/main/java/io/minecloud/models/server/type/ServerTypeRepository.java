@@ -18,9 +18,12 @@ package io.minecloud.models.server.type;
 import io.minecloud.db.mongo.AbstractMongoRepository;
 import org.mongodb.morphia.Datastore;
 
+import java.util.concurrent.TimeUnit;
+
 public class ServerTypeRepository extends AbstractMongoRepository<ServerType> {
     private ServerTypeRepository(Datastore datastore) {
         super(ServerType.class, datastore);
+        enableCache(5, TimeUnit.MINUTES, 256);
     }
 
     public static ServerTypeRepository create(Datastore datastore) {
@@ -15,6 +15,7 @@
  */
 package io.minecloud.daemon;
 
+import io.minecloud.ContentCache;
 import io.minecloud.MineCloud;
 import io.minecloud.MineCloudException;
 import io.minecloud.db.Credentials;
@@ -26,6 +27,7 @@ import io.minecloud.models.nodes.Node;
 import io.minecloud.models.server.Server;
 import io.minecloud.models.server.ServerMetadata;
 import io.minecloud.models.server.ServerRepository;
+import io.minecloud.models.server.World;
 import io.minecloud.models.server.type.ServerType;
 import redis.clients.jedis.Jedis;
 
@@ -34,59 +36,187 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 public final class Deployer extends Thread {
     public static final AtomicInteger PORT_COUNTER = new AtomicInteger(32812);
-    
+    /** Cores busier than this percentage don't count towards deploy concurrency */
+    private static final double BUSY_CORE_USAGE = 85;
+
     private static final Deployer instance = new Deployer();
     
-    private final Queue<LaunchData> launchQueue = new ConcurrentLinkedQueue<>();
+    private final PriorityBlockingQueue<LaunchData> launchQueue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    /** Servers started by this deployer which have not announced themselves yet, by name */
+    private final Map<String, Boot> booting = new HashMap<>();
+    private ExecutorService workers;
+    private ContentCache contents;
+    private TemplateCache templates;
+    private int maxConcurrency;
+    private long deployed;
+    private long lastWait;
+    private double averageWait;
     
-    private static class LaunchData {
-    	private Network network;
-    	private ServerType type;
-    	private List<ServerMetadata> metadata;
-    	public LaunchData(Network network, ServerType type, List<ServerMetadata> metadata) {
+    private static class LaunchData implements Comparable<LaunchData> {
+    	private final Network network;
+    	private final ServerType type;
+    	private final List<ServerMetadata> metadata;
+    	private final int priority;
+    	private final long sequence;
+    	private final long queuedAt = System.currentTimeMillis();
+
+    	public LaunchData(Network network, ServerType type, List<ServerMetadata> metadata, long sequence) {
     		this.network = network;
     		this.type = type;
     		this.metadata = metadata;
+    		this.priority = type.deployPriority();
+    		this.sequence = sequence;
+    	}
+
+    	@Override
+    	public int compareTo(LaunchData other) {
+    	    //Highest priority first, then in the order they came in
+    	    int compare = Integer.compare(other.priority, priority);
+
+    	    return compare != 0 ? compare : Long.compare(sequence, other.sequence);
     	}
     }
 
+    private static class Boot {
+        private final long started = System.currentTimeMillis();
+        private final long timeOut;
+        private final int ram;
+
+        private Boot(ServerType type) {
+            this.timeOut = type.timeOut() * 1000L;
+            this.ram = type.dedicatedRam();
+        }
+    }
+
     private Deployer() {
+        super("Deployer");
     }
     
-    public static void startThread() {
+    /**
+     * @param maxConcurrency the most servers which may be booting on this node at once
+     */
+    public static void startThread(int maxConcurrency, ContentCache contents, TemplateCache templates) {
+        instance.maxConcurrency = Math.max(1, maxConcurrency);
+        instance.contents = contents;
+        instance.templates = templates;
+        instance.workers = Executors.newFixedThreadPool(instance.maxConcurrency);
     	instance.start();
     }
     
     @Override
     public void run() {
-    	while (true) {
-    		if (!launchQueue.isEmpty()) {
-    		    LaunchData data = launchQueue.poll();
-    		    MineCloud.logger().log(Level.INFO, "Deploying: " + data.type.name());
-    		    MineCloud.logger().log(Level.INFO, "Queue Size: " + launchQueue.size());
-    			deployServer(data);
-    		}
-			try {
-				Thread.sleep(7500);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
+    	while (!isInterrupted()) {
+    	    LaunchData data;
+
+    	    try {
+    	        data = launchQueue.take();
+    	        awaitCapacity(data);
+    	    } catch (InterruptedException ex) {
+    	        break;
+    	    }
+
+    	    Server server = register(data);
+
+    	    if (server == null) {
+    	        continue;
+    	    }
+
+    	    MineCloud.logger().log(Level.INFO, "Deploying: " + server.name() + " after waiting " + lastWait + "ms");
+    	    MineCloud.logger().log(Level.INFO, "Queue Size: " + launchQueue.size());
+    	    workers.execute(() -> launch(server, data));
     	}
     }
     
     public static void deployServer(Network network, ServerType type, List<ServerMetadata> metadata) {
-    	instance.launchQueue.add(new LaunchData(network, type, metadata));
+    	instance.launchQueue.add(new LaunchData(network, type, metadata, instance.sequence.incrementAndGet()));
+    	instance.publishMetrics();
     }
 
-    private static void deployServer(LaunchData data) {
-        Credentials mongoCreds = MineCloud.instance().mongo().credentials();
-        Credentials redisCreds = MineCloud.instance().redis().credentials();
+    /**
+     * Marks a server started by this node as up, freeing its deploy slot
+     */
+    public static void started(String name) {
+        synchronized (instance) {
+            if (instance.booting.remove(name) != null) {
+                instance.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Blocks until this node has a free deploy slot and the RAM for the server, judged from
+     * the statistics the {@link StatisticsWatcher} keeps on the node. A node with nothing
+     * booting always takes the next deploy so the queue can't stall. The node is read and
+     * the metrics published without holding the monitor, only the boot bookkeeping needs it.
+     */
+    private void awaitCapacity(LaunchData data) throws InterruptedException {
+        while (true) {
+            synchronized (this) {
+                expireBoots();
+
+                if (booting.isEmpty()) {
+                    recordWait(data);
+                    return;
+                }
+            }
+
+            Node node = MineCloudDaemon.instance().node();
+
+            synchronized (this) {
+                int bootingRam = booting.values().stream().mapToInt((boot) -> boot.ram).sum();
+
+                if (booting.isEmpty() || (booting.size() < concurrency(node)
+                        && node.availableRam() - bootingRam >= data.type.dedicatedRam())) {
+                    recordWait(data);
+                    return;
+                }
+
+                wait(1000L);
+            }
+
+            publishMetrics();
+        }
+    }
+
+    private void recordWait(LaunchData data) {
+        lastWait = System.currentTimeMillis() - data.queuedAt;
+        averageWait = deployed == 0 ? lastWait : averageWait * 0.8 + lastWait * 0.2;
+        deployed++;
+    }
+
+    private int concurrency(Node node) {
+        if (node.coreMetadata() == null || node.coreMetadata().isEmpty()) {
+            return maxConcurrency;
+        }
+
+        int idleCores = (int) node.coreMetadata().stream()
+                .filter((core) -> core.usage() < BUSY_CORE_USAGE)
+                .count();
+
+        return Math.max(1, Math.min(maxConcurrency, idleCores));
+    }
+
+    private void expireBoots() {
+        long now = System.currentTimeMillis();
+
+        booting.values().removeIf((boot) -> now - boot.started >= boot.timeOut);
+    }
+
+    /**
+     * Claims a number and port for the server and saves it. Runs on the dispatcher thread
+     * only, so two deploys on this node can never be handed the same number.
+     */
+    private Server register(LaunchData data) {
         ServerRepository repository = MineCloud.instance().mongo().repositoryBy(Server.class);
         Server server = new Server();
 
@@ -98,6 +228,7 @@ public final class Deployer extends Thread {
         server.setRamUsage(-1);
         server.setId(server.type().name() + server.number());
         server.setMetadata(data.metadata);
+        server.setStandby(server.hasMetadata(ServerMetadata.STANDBY));
         if (PORT_COUNTER.get() >= 65535) {
         	PORT_COUNTER.set(32812);
         }
@@ -107,11 +238,43 @@ public final class Deployer extends Thread {
 
         try {
             if (isRunning(server.name())) {
-                return;
+                return null;
             }
         } catch (IOException | InterruptedException ignored) {
         }
 
+        repository.save(server);
+
+        synchronized (this) {
+            booting.put(server.name(), new Boot(data.type));
+        }
+
+        publishMetrics();
+        return server;
+    }
+
+    private void launch(Server server, LaunchData data) {
+        Credentials mongoCreds = MineCloud.instance().mongo().credentials();
+        Credentials redisCreds = MineCloud.instance().redis().credentials();
+        World defaultWorld = data.type.defaultWorld();
+        TemplateCache.Template template = null;
+
+        try {
+            contents.fetch(data.type);
+        } catch (IOException ex) {
+            MineCloud.logger().log(Level.WARNING, "Unable to cache the files of " + data.type.name() +
+                    ", " + server.name() + " will read them from the mount", ex);
+        }
+
+        try {
+            template = templates.templateFor(data.type, defaultWorld);
+        } catch (IOException ex) {
+            MineCloud.logger().log(Level.WARNING, "Unable to prepare a template for " + server.name() +
+                    ", it will copy its files itself", ex);
+        }
+
+        boolean templateReady = template != null;
+
         Map<String, String> env = new HashMap<String, String>() {{
             put("mongo_hosts", mongoCreds.formattedHosts());
             put("mongo_username", mongoCreds.username());
@@ -125,16 +288,46 @@ public final class Deployer extends Thread {
             put("MAX_PLAYERS", String.valueOf(server.type().maxPlayers()));
 
             put("server_id", server.entityId());
-            put("DEFAULT_WORLD", data.type.defaultWorld().name());
-            put("DEFAULT_WORLD_VERSION", data.type.defaultWorld().version());
+            put("DEFAULT_WORLD", defaultWorld.name());
+            put("DEFAULT_WORLD_VERSION", defaultWorld.version());
+            put("TEMPLATE_READY", templateReady ? "1" : "0");
+            put("content_cache", contents.root().toString());
 
             put("PORT", String.valueOf(server.port()));
             put("PRIVATE_IP", server.node().privateIp());
         }};
 
-        startApplication(processScript("/mnt/minecloud/server/bukkit/" + server.type().mod() + "/init.sh", env), server.name(), env);
-        repository.save(server);
-        MineCloud.logger().info("Started server " + server.name() + " with container id " + server.containerId());
+        try {
+            startApplication(processScript("/mnt/minecloud/server/bukkit/" + server.type().mod() + "/init.sh", env),
+                    server.name(), env, template);
+            MineCloud.logger().info("Started server " + server.name() + " with container id " + server.containerId());
+        } catch (MineCloudException ex) {
+            MineCloud.logger().log(Level.SEVERE, "Was unable to start " + server.name(), ex);
+            MineCloud.instance().mongo().repositoryBy(Server.class).deleteById(server.entityId());
+            started(server.name());
+        }
+    }
+
+    /**
+     * Exposes the queue in the deployer:&lt;node&gt; hash, wait times are in milliseconds
+     */
+    private void publishMetrics() {
+        Map<String, String> metrics = new HashMap<>();
+
+        synchronized (this) {
+            metrics.put("queued", String.valueOf(launchQueue.size()));
+            metrics.put("booting", String.valueOf(booting.size()));
+            metrics.put("max-concurrency", String.valueOf(maxConcurrency));
+            metrics.put("deployed", String.valueOf(deployed));
+            metrics.put("last-wait", String.valueOf(lastWait));
+            metrics.put("average-wait", String.valueOf((long) averageWait));
+        }
+
+        try (Jedis jedis = MineCloudDaemon.instance().redis().grabResource()) {
+            jedis.hmset("deployer:" + MineCloudDaemon.instance().nodeName(), metrics);
+        } catch (Exception ex) {
+            MineCloud.logger().log(Level.WARNING, "Unable to publish deployer metrics", ex);
+        }
     }
 
     public static void deployBungee(Network network, BungeeType type) {
@@ -163,9 +356,17 @@ public final class Deployer extends Thread {
             put("DEDICATED_RAM", String.valueOf(type.dedicatedRam()));
 
             put("bungee_id", node.publicIp());
+            put("content_cache", instance.contents.root().toString());
         }};
 
-        startApplication(processScript("/mnt/minecloud/scripts/bungee-init.sh", env), "bungee", env);
+        try {
+            instance.contents.fetch(type);
+        } catch (IOException ex) {
+            MineCloud.logger().log(Level.WARNING, "Unable to cache the files of " + type.name() +
+                    ", the bungee will read them from the mount", ex);
+        }
+
+        startApplication(processScript("/mnt/minecloud/scripts/bungee-init.sh", env), "bungee", env, null);
 
         bungee.setNetwork(network);
         bungee.setNode(node);
@@ -245,7 +446,8 @@ public final class Deployer extends Thread {
         return script;
     }
 
-    private static void startApplication(List<String> startScript, String name, Map<String, String> env) {
+    private static void startApplication(List<String> startScript, String name, Map<String, String> env,
+                                         TemplateCache.Template template) {
         File runDir = new File("/var/minecloud/" + name);
 
         if (runDir.exists()) {
@@ -255,6 +457,10 @@ public final class Deployer extends Thread {
         runDir.mkdirs();
 
         try {
+            if (template != null) {
+                template.materialize(runDir);
+            }
+
             Files.write(Paths.get(runDir.getAbsolutePath(), "start.sh"), startScript);
             Files.write(Paths.get(runDir.getAbsolutePath(), "started.ts"), Arrays.asList(String.valueOf(System.currentTimeMillis())));
             new File(runDir, "start.sh").setExecutable(true);
@@ -292,4 +498,4 @@ public final class Deployer extends Thread {
             this.value = value;
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -15,12 +15,17 @@
  */
 package io.minecloud.daemon;
 
+import io.minecloud.ContentCache;
 import io.minecloud.MineCloud;
 import io.minecloud.db.Credentials;
 import io.minecloud.db.mongo.MongoDatabase;
 import io.minecloud.db.redis.RedisDatabase;
 import io.minecloud.db.redis.msg.MessageType;
 import io.minecloud.db.redis.msg.binary.MessageInputStream;
+import io.minecloud.db.redis.msg.schema.BungeeCreateMessage;
+import io.minecloud.db.redis.msg.schema.ServerCreateMessage;
+import io.minecloud.db.redis.pubsub.ChannelCallback;
+import io.minecloud.db.redis.pubsub.NodeChannels;
 import io.minecloud.db.redis.pubsub.SimpleRedisChannel;
 import io.minecloud.models.bungee.Bungee;
 import io.minecloud.models.bungee.BungeeRepository;
@@ -29,7 +34,6 @@ import io.minecloud.models.network.Network;
 import io.minecloud.models.nodes.Node;
 import io.minecloud.models.nodes.NodeRepository;
 import io.minecloud.models.server.Server;
-import io.minecloud.models.server.ServerMetadata;
 import io.minecloud.models.server.ServerRepository;
 import io.minecloud.models.server.type.ServerType;
 import org.mongodb.morphia.query.Query;
@@ -39,7 +43,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -49,41 +56,78 @@ public class MineCloudDaemon {
     private final String node;
     private final RedisDatabase redis;
     private final MongoDatabase mongo;
+    private final ContentCache contents;
+    private final long contentCacheSize;
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor();
+    private final Map<String, ChannelCallback> commands = new HashMap<>();
 
     private List<String> names;
+    private long lastEviction;
 
     private MineCloudDaemon(Properties properties) {
         redis = MineCloud.instance().redis();
         mongo = MineCloud.instance().mongo();
         node = (String) properties.get("node-name");
 
+        if (properties.containsKey("message-codec")) {
+            redis.codec().setEnabled(properties.getProperty("message-codec").equalsIgnoreCase("schema"));
+        }
+        contents = ContentCache.create(Paths.get(properties.getProperty("content-cache", "/var/cache/minecloud/content")));
+        contentCacheSize = Long.parseLong(properties.getProperty("content-cache-size", "10240")) * 1024 * 1024;
+
         instance = this;
 
-        redis.addChannel(SimpleRedisChannel.create("server-create", redis)
+        //Pull plugins, configs and worlds of pushed types onto this node before anything asks for them
+        redis.addChannel(SimpleRedisChannel.create("content-prefetch", redis)
                 .addCallback((message) -> {
                     if (message.type() != MessageType.BINARY) {
                         return;
                     }
 
                     MessageInputStream stream = message.contents();
+                    String kind = stream.readString();
+                    String name = stream.readString();
+
+                    prefetcher.execute(() -> {
+                        try {
+                            if (kind.equals("server")) {
+                                ServerType type = mongo.repositoryBy(ServerType.class).findFirst(name);
+
+                                if (type != null) {
+                                    contents.fetch(type);
+                                }
+                            } else if (kind.equals("bungee")) {
+                                BungeeType type = mongo.repositoryBy(BungeeType.class).findFirst(name);
+
+                                if (type != null) {
+                                    contents.fetch(type);
+                                }
+                            }
+                        } catch (IOException ex) {
+                            MineCloud.logger().log(Level.WARNING, "Unable to prefetch " + kind + " type " + name, ex);
+                        }
+                    });
+                }));
 
-                    if (!stream.readString().equalsIgnoreCase(node)) {
+        listen(SimpleRedisChannel.create("server-create", redis)
+                .addCallback((message) -> {
+                    if (message.type() != MessageType.BINARY && message.type() != MessageType.SCHEMA) {
                         return;
                     }
 
-                    Network network = mongo.repositoryBy(Network.class).findFirst(stream.readString());
-                    ServerType type = mongo.repositoryBy(ServerType.class).findFirst(stream.readString());
-                    List<ServerMetadata> metadata = new ArrayList<>();
-                    int size = stream.readVarInt32();
+                    ServerCreateMessage create = redis.codec().decode(ServerCreateMessage.SCHEMA, message);
 
-                    for (int i = 0; i < size; i++) {
-                        metadata.add(new ServerMetadata(stream.readString(), stream.readString()));
+                    if (!create.node().equalsIgnoreCase(node)) {
+                        return;
                     }
 
-                    Deployer.deployServer(network, type, metadata);
+                    Network network = mongo.repositoryBy(Network.class).findFirst(create.network());
+                    ServerType type = mongo.repositoryBy(ServerType.class).findFirst(create.type());
+
+                    Deployer.deployServer(network, type, new ArrayList<>(create.metadata()));
                 }));
 
-        redis.addChannel(SimpleRedisChannel.create("server-kill", redis)
+        listen(SimpleRedisChannel.create("server-kill", redis)
                 .addCallback((message) -> {
                     if (message.type() != MessageType.BINARY) {
                         return;
@@ -116,24 +160,24 @@ public class MineCloudDaemon {
                     }
                 }));
 
-        redis.addChannel(SimpleRedisChannel.create("bungee-create", redis)
+        listen(SimpleRedisChannel.create("bungee-create", redis)
                 .addCallback((message) -> {
-                    if (message.type() != MessageType.BINARY) {
+                    if (message.type() != MessageType.BINARY && message.type() != MessageType.SCHEMA) {
                         return;
                     }
 
-                    MessageInputStream stream = message.contents();
+                    BungeeCreateMessage create = redis.codec().decode(BungeeCreateMessage.SCHEMA, message);
 
-                    if (!stream.readString().equalsIgnoreCase(node))
+                    if (!create.node().equalsIgnoreCase(node))
                         return;
 
-                    Network network = mongo.repositoryBy(Network.class).findFirst(stream.readString());
-                    BungeeType type = mongo.repositoryBy(BungeeType.class).findFirst(stream.readString());
+                    Network network = mongo.repositoryBy(Network.class).findFirst(create.network());
+                    BungeeType type = mongo.repositoryBy(BungeeType.class).findFirst(create.type());
 
                     Deployer.deployBungee(network, type);
                 }));
 
-        redis.addChannel(SimpleRedisChannel.create("bungee-kill", redis)
+        listen(SimpleRedisChannel.create("bungee-kill", redis)
                 .addCallback((message) -> {
                     if (message.type() != MessageType.BINARY) {
                         return;
@@ -163,6 +207,16 @@ public class MineCloudDaemon {
                     }
                 }));
 
+        // A deploy is acknowledged once the Deployer has queued it, not once the server is up.
+        // A launch failing after that deletes the server and is left to the controller to redeploy.
+        redis.commands().consume(node, (command) -> {
+            ChannelCallback callback = commands.get(command.name());
+
+            if (callback != null) {
+                callback.call(command.payload());
+            }
+        });
+
         redis.addChannel(SimpleRedisChannel.create("server-start-notif", redis)
                 .addCallback((message) -> {
                     if (message.type() != MessageType.BINARY)
@@ -174,6 +228,7 @@ public class MineCloudDaemon {
                     if (!server.node().name().equals(node))
                         return;
 
+                    Deployer.started(server.name());
                     server.setContainerId(String.valueOf(Deployer.pidOf(server.name())));
                     mongo.repositoryBy(Server.class).save(server);
                 }));
@@ -183,7 +238,10 @@ public class MineCloudDaemon {
                         return;
 
                     MessageInputStream stream = message.contents();
-                    File file = new File("/var/minecloud/" + stream.readString());
+                    String name = stream.readString();
+                    File file = new File("/var/minecloud/" + name);
+
+                    Deployer.started(name);
 
                     if (file.exists()) {
                         file.delete();
@@ -197,10 +255,15 @@ public class MineCloudDaemon {
         Deployer.PORT_COUNTER.set((port.isPresent() ? port.getAsInt() : 32811) + 1);
         
         //Start deployer
-        Deployer.startThread();
+        Deployer.startThread(Integer.parseInt(properties.getProperty("deploy-concurrency",
+                String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                contents,
+                TemplateCache.create(Paths.get(properties.getProperty("template-cache", "/var/cache/minecloud/templates")),
+                        Integer.parseInt(properties.getProperty("template-cache-size", "32")), contents));
 
         while (!Thread.currentThread().isInterrupted()) {
             this.redis.connected(); //Checks for Redis death, if it's dead it will reconnect.
+            announce();
 
             BungeeRepository bungeeRepo = mongo.repositoryBy(Bungee.class);
             Node node = node();
@@ -318,6 +381,16 @@ public class MineCloudDaemon {
                 }
             }
 
+            if (System.currentTimeMillis() - lastEviction > 60_000L) {
+                lastEviction = System.currentTimeMillis();
+
+                try {
+                    contents.evict(contentCacheSize);
+                } catch (IOException ex) {
+                    MineCloud.logger().log(Level.WARNING, "Unable to evict from the content cache", ex);
+                }
+            }
+
             try {
                 Thread.sleep(2000L);
             } catch (InterruptedException ignored) {
@@ -325,6 +398,19 @@ public class MineCloudDaemon {
         }
     }
 
+    /**
+     * Listens for a command on the command bus, this node's own channel and the shared
+     * channel older controllers still broadcast on
+     */
+    private void listen(SimpleRedisChannel channel) {
+        String command = channel.channel();
+
+        commands.put(command, channel::handle);
+        redis.addChannel(SimpleRedisChannel.create(NodeChannels.channelOf(node, command), redis)
+                .addCallback(channel::handle));
+        redis.addChannel(channel);
+    }
+
     public static void main(String[] args) throws Exception {
         Properties properties = new Properties();
         File configFolder = new File("/etc/minecloud/");
@@ -366,10 +452,26 @@ public class MineCloudDaemon {
         return instance;
     }
 
+    /**
+     * Tells controllers this node listens on its own channels. A failure only delays that,
+     * it must not end the main loop.
+     */
+    private void announce() {
+        try {
+            redis.nodeChannels().announce(node);
+        } catch (RuntimeException ex) {
+            MineCloud.logger().log(Level.WARNING, "Unable to announce node channels", ex);
+        }
+    }
+
     public Node node() {
         return ((NodeRepository) mongo.repositoryBy(Node.class)).nodeBy(node);
     }
 
+    public String nodeName() {
+        return node;
+    }
+
     public RedisDatabase redis() {
         return redis;
     }
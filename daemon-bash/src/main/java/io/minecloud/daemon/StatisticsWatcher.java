@@ -16,9 +16,11 @@
 package io.minecloud.daemon;
 
 import io.minecloud.MineCloud;
+import io.minecloud.db.mongo.Filter;
 import io.minecloud.models.bungee.Bungee;
 import io.minecloud.models.nodes.CoreMetadata;
 import io.minecloud.models.nodes.Node;
+import io.minecloud.models.server.LiveState;
 import io.minecloud.models.server.Server;
 
 import java.io.File;
@@ -28,7 +30,9 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 // I'm sorry for this class, I recommend almost nobody reads this
@@ -113,14 +117,21 @@ public class StatisticsWatcher extends Thread {
 
             Collection<Server> servers = MineCloud.instance().mongo()
                     .repositoryBy(Server.class)
-                    .findAll((server) -> server.node().name().equals(node.name()));
+                    .findAll(Filter.<Server>create().node(node));
             Collection<Bungee> bungees = MineCloud.instance().mongo()
                     .repositoryBy(Bungee.class)
-                    .findAll((bungee) -> bungee.node().name().equals(node.name()));
+                    .findAll(Filter.<Bungee>create().node(node));
             int ramUsed = 0;
 
+            Map<String, LiveState> states = MineCloud.instance().liveStates().statesOf(servers.stream()
+                    .map(Server::name)
+                    .collect(Collectors.toList()));
+
+            // servers only write their first report to Mongo, the current RAM usage is in Redis
             for (Server server : servers) {
-                ramUsed += server.ramUsage();
+                LiveState state = states.get(server.name());
+
+                ramUsed += state != null ? state.ramUsage() : server.ramUsage();
             }
 
             for (Bungee bungee : bungees) {
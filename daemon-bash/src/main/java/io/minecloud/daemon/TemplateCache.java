@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2015, Mazen Kotb <email@mazenmc.io>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package io.minecloud.daemon;
+
+import io.minecloud.ContentCache;
+import io.minecloud.MineCloud;
+import io.minecloud.models.plugins.Plugin;
+import io.minecloud.models.server.World;
+import io.minecloud.models.server.type.ServerType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * Keeps pre-built server directories on the node, one per combination of mod, worlds and
+ * plugins a server type starts with. A template is named after a checksum of what went into
+ * it, including the size and modification time of every source file, so changing a world
+ * or plugin simply builds a new template on the next start.
+ * </p>
+ * <p>
+ * Starting a server then materializes its template instead of copying from the mount: jars
+ * are hardlinked as they're never written to, worlds are copied with reflinks where the
+ * filesystem supports them and everything else is copied from local disk.
+ * </p>
+ */
+public final class TemplateCache {
+    private static final String MANIFEST = ".template";
+
+    private final Path root;
+    private final int capacity;
+    private final ContentCache contents;
+    private final Map<String, Object> building = new ConcurrentHashMap<>();
+    // templates are only pruned while nothing is being materialized from them
+    private final ReadWriteLock pruneLock = new ReentrantReadWriteLock();
+
+    private TemplateCache(Path root, int capacity, ContentCache contents) {
+        this.root = root;
+        this.capacity = capacity;
+        this.contents = contents;
+    }
+
+    /**
+     * @param capacity the most templates kept, least recently used ones are removed first
+     * @param contents where worlds, plugins and configs are read from
+     */
+    public static TemplateCache create(Path root, int capacity, ContentCache contents) {
+        return new TemplateCache(root, Math.max(1, capacity), contents);
+    }
+
+    /**
+     * Finds or builds the template for a server of the given type
+     *
+     * @param defaultWorld the default world picked for this server
+     */
+    public Template templateFor(ServerType type, World defaultWorld) throws IOException {
+        //Keeps the cached contents from being evicted while they're read into the template
+        try (ContentCache.Pin pin = contents.pin(type)) {
+            return findOrBuild(type, defaultWorld);
+        }
+    }
+
+    private Template findOrBuild(ServerType type, World defaultWorld) throws IOException {
+        List<Source> sources = sourcesFor(type, defaultWorld);
+        String key = checksum(sources);
+        Path template = root.resolve(key);
+
+        if (!Files.isDirectory(template)) {
+            synchronized (building.computeIfAbsent(key, (k) -> new Object())) {
+                try {
+                    if (!Files.isDirectory(template)) {
+                        build(template, sources);
+                        prune(key);
+                    }
+                } finally {
+                    building.remove(key);
+                }
+            }
+        }
+
+        Files.setLastModifiedTime(template, FileTime.fromMillis(System.currentTimeMillis()));
+
+        Set<Path> worlds = sources.stream()
+                .filter((source) -> source.world)
+                .map((source) -> source.target)
+                .collect(Collectors.toSet());
+
+        return new Template(template, worlds);
+    }
+
+    private List<Source> sourcesFor(ServerType type, World defaultWorld) {
+        List<Source> sources = new ArrayList<>();
+
+        sources.add(new Source("/mnt/minecloud/server/bukkit/" + type.mod(), "", false, false));
+        sources.add(new Source(contents.world(defaultWorld.name(), defaultWorld.version()).getPath(),
+                "worlds/" + defaultWorld.name(), false, true));
+        sources.add(new Source("/mnt/minecloud/plugins/minecloud-bukkit/latest", "plugins", false, false));
+
+        //Additional worlds and plugins, laid out the way the bukkit plugin loads them
+        for (World world : type.worlds()) {
+            sources.add(new Source(contents.world(world.name(), world.version()).getPath(),
+                    world.name(), false, true));
+        }
+
+        for (Plugin plugin : type.plugins()) {
+            String name = plugin.type().name();
+
+            sources.add(new Source(contents.plugin(name, plugin.version()).getPath(), "nplugins", true, false));
+            sources.add(new Source(contents.config(name, plugin.config() == null ? plugin.version() : plugin.config())
+                    .getPath(), "nplugins/" + name, false, false));
+        }
+
+        return sources;
+    }
+
+    private String checksum(List<Source> sources) throws IOException {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+
+        for (Source source : sources) {
+            //Only what ends up in the template counts, a cached copy of the mount gives the same checksum
+            digest.update((source.target + ";").getBytes(StandardCharsets.UTF_8));
+
+            if (!Files.isDirectory(source.path)) {
+                continue;
+            }
+
+            try (Stream<Path> files = source.filesOnly ? Files.list(source.path) : Files.walk(source.path)) {
+                List<Path> sorted = files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+
+                for (Path file : sorted) {
+                    digest.update((source.path.relativize(file) + ":" + Files.size(file) + ":" +
+                            Files.getLastModifiedTime(file).toMillis() + ";").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+
+        for (byte b : digest.digest()) {
+            builder.append(String.format("%02x", b));
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Copies the sources from the mount into a temporary directory which is renamed into
+     * place once complete, so a half built template is never used
+     */
+    private void build(Path template, List<Source> sources) throws IOException {
+        Path temporary = root.resolve(template.getFileName() + ".tmp-" + System.nanoTime());
+        long start = System.currentTimeMillis();
+
+        Files.createDirectories(temporary);
+
+        try {
+            for (Source source : sources) {
+                if (!Files.isDirectory(source.path)) {
+                    continue;
+                }
+
+                Path target = temporary.resolve(source.target);
+
+                Files.createDirectories(target);
+
+                if (source.filesOnly) {
+                    try (Stream<Path> files = Files.list(source.path)) {
+                        for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                            Files.copy(file, target.resolve(file.getFileName().toString()),
+                                    StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    }
+                } else {
+                    copyTree(source.path, target);
+                }
+            }
+
+            Files.write(temporary.resolve(MANIFEST), sources.stream()
+                    .map((source) -> source.path + " > " + source.target)
+                    .collect(Collectors.toList()));
+            Files.move(temporary, template, StandardCopyOption.ATOMIC_MOVE);
+            MineCloud.logger().info("Built server template " + template.getFileName() + " in " +
+                    (System.currentTimeMillis() - start) + "ms");
+        } finally {
+            if (Files.exists(temporary)) {
+                deleteTree(temporary);
+            }
+        }
+    }
+
+    private void prune(String keep) {
+        File[] templates = root.toFile().listFiles((file) -> file.isDirectory() && !file.getName().contains(".tmp-"));
+
+        if (templates == null || templates.length <= capacity) {
+            return;
+        }
+
+        pruneLock.writeLock().lock();
+
+        try {
+            Arrays.sort(templates, Comparator.comparingLong(File::lastModified));
+
+            for (int i = 0; i < templates.length - capacity; i++) {
+                if (templates[i].getName().equals(keep)) {
+                    continue;
+                }
+
+                deleteTree(templates[i].toPath());
+                MineCloud.logger().info("Removed unused server template " + templates[i].getName());
+            }
+        } catch (IOException ex) {
+            MineCloud.logger().log(Level.WARNING, "Unable to prune server templates", ex);
+        } finally {
+            pruneLock.writeLock().unlock();
+        }
+    }
+
+    private static void copyTree(Path source, Path target) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, target.resolve(source.relativize(file).toString()), StandardCopyOption.REPLACE_EXISTING);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void deleteTree(Path path) throws IOException {
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static final class Source {
+        private final Path path;
+        private final Path target;
+        private final boolean filesOnly;
+        private final boolean world;
+
+        private Source(String path, String target, boolean filesOnly, boolean world) {
+            this.path = Paths.get(path);
+            this.target = Paths.get(target);
+            this.filesOnly = filesOnly;
+            this.world = world;
+        }
+    }
+
+    /**
+     * A built template, ready to be materialized into server directories
+     */
+    public final class Template {
+        private final Path path;
+        private final Set<Path> worlds;
+
+        private Template(Path path, Set<Path> worlds) {
+            this.path = path;
+            this.worlds = worlds;
+        }
+
+        public void materialize(File directory) throws IOException {
+            Path target = directory.toPath();
+
+            pruneLock.readLock().lock();
+
+            try {
+                Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                        Path relative = path.relativize(dir);
+                        Path destination = target.resolve(relative.toString());
+
+                        //Worlds are written to in place, they need copies of their own
+                        if (worlds.contains(relative)) {
+                            reflink(dir, destination);
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+
+                        Files.createDirectories(destination);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        Path relative = path.relativize(file);
+                        Path destination = target.resolve(relative.toString());
+
+                        if (relative.toString().equals(MANIFEST)) {
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        Files.deleteIfExists(destination);
+
+                        if (file.getFileName().toString().endsWith(".jar")) {
+                            try {
+                                Files.createLink(destination, file);
+                                return FileVisitResult.CONTINUE;
+                            } catch (IOException | UnsupportedOperationException ignored) {
+                                // different filesystem, fall back to a copy
+                            }
+                        }
+
+                        Files.copy(file, destination);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } finally {
+                pruneLock.readLock().unlock();
+            }
+        }
+
+        private void reflink(Path source, Path destination) throws IOException {
+            Files.createDirectories(destination.getParent());
+
+            Process process = new ProcessBuilder()
+                    .command("cp", "-r", "--reflink=auto", source.toString(), destination.toString())
+                    .redirectErrorStream(true)
+                    .start();
+
+            try {
+                if (process.waitFor() != 0) {
+                    throw new IOException("Copying " + source + " exited with " + process.exitValue());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            }
+        }
+    }
+}
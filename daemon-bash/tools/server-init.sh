@@ -24,14 +24,18 @@ DEFAULT_WORLD="]DEFAULT_WORLD"
 DEFAULT_WORLD_VERSION="]DEFAULT_WORLD_VERSION"
 PORT="]PORT"
 PRIVATE_IP="]PRIVATE_IP"
-
-mkdir worlds
-mkdir plugins
-mkdir worlds/$DEFAULT_WORLD
-
-cp -r /mnt/minecloud/server/bukkit/$SERVER_MOD/* .
-cp -r /mnt/minecloud/worlds/$DEFAULT_WORLD/$DEFAULT_WORLD_VERSION/* worlds/$DEFAULT_WORLD/
-cp -r /mnt/minecloud/plugins/minecloud-bukkit/latest/* plugins/
+TEMPLATE_READY="]TEMPLATE_READY"
+
+# the daemon already laid out the server from its template cache
+if [ "$TEMPLATE_READY" != "1" ]; then
+    mkdir worlds
+    mkdir plugins
+    mkdir worlds/$DEFAULT_WORLD
+
+    cp -r /mnt/minecloud/server/bukkit/$SERVER_MOD/* .
+    cp -r /mnt/minecloud/worlds/$DEFAULT_WORLD/$DEFAULT_WORLD_VERSION/* worlds/$DEFAULT_WORLD/
+    cp -r /mnt/minecloud/plugins/minecloud-bukkit/latest/* plugins/
+fi
 
 sed -i "s/levelname/$DEFAULT_WORLD/" server.properties
 sed -i "s/maxplayers/$MAX_PLAYERS/" server.properties
@@ -58,6 +58,7 @@ public final class Deployer {
         server.setContainerId(server.type().name() + server.number());
         server.setId(server.containerId());
         server.setMetadata(metadata);
+        server.setStandby(server.hasMetadata(ServerMetadata.STANDBY));
 
         repository.save(server);
 
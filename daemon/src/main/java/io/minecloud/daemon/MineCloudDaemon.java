@@ -26,6 +26,10 @@ import io.minecloud.db.mongo.MongoDatabase;
 import io.minecloud.db.redis.RedisDatabase;
 import io.minecloud.db.redis.msg.MessageType;
 import io.minecloud.db.redis.msg.binary.MessageInputStream;
+import io.minecloud.db.redis.msg.schema.BungeeCreateMessage;
+import io.minecloud.db.redis.msg.schema.ServerCreateMessage;
+import io.minecloud.db.redis.pubsub.ChannelCallback;
+import io.minecloud.db.redis.pubsub.NodeChannels;
 import io.minecloud.db.redis.pubsub.SimpleRedisChannel;
 import io.minecloud.models.bungee.Bungee;
 import io.minecloud.models.bungee.type.BungeeType;
@@ -33,7 +37,6 @@ import io.minecloud.models.network.Network;
 import io.minecloud.models.nodes.Node;
 import io.minecloud.models.nodes.NodeRepository;
 import io.minecloud.models.server.Server;
-import io.minecloud.models.server.ServerMetadata;
 import io.minecloud.models.server.ServerRepository;
 import io.minecloud.models.server.type.ServerType;
 import org.mongodb.morphia.query.Query;
@@ -41,7 +44,8 @@ import org.mongodb.morphia.query.Query;
 import java.io.File;
 import java.io.FileInputStream;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Level;
 
@@ -52,6 +56,7 @@ public class MineCloudDaemon {
     private final DockerClient dockerClient;
     private final RedisDatabase redis;
     private final MongoDatabase mongo;
+    private final Map<String, ChannelCallback> commands = new HashMap<>();
 
     private MineCloudDaemon(Properties properties) {
         redis = MineCloud.instance().redis();
@@ -59,33 +64,31 @@ public class MineCloudDaemon {
         dockerClient = new DefaultDockerClient("unix:///var/run/docker.sock");
 
         node = (String) properties.get("node-name");
+
+        if (properties.containsKey("message-codec")) {
+            redis.codec().setEnabled(properties.getProperty("message-codec").equalsIgnoreCase("schema"));
+        }
         instance = this;
 
-        redis.addChannel(SimpleRedisChannel.create("server-create", redis)
+        listen(SimpleRedisChannel.create("server-create", redis)
                 .addCallback((message) -> {
-                    if (message.type() != MessageType.BINARY) {
+                    if (message.type() != MessageType.BINARY && message.type() != MessageType.SCHEMA) {
                         return;
                     }
 
-                    MessageInputStream stream = message.contents();
+                    ServerCreateMessage create = redis.codec().decode(ServerCreateMessage.SCHEMA, message);
 
-                    if (!stream.readString().equalsIgnoreCase(node)) {
+                    if (!create.node().equalsIgnoreCase(node)) {
                         return;
                     }
 
-                    Network network = mongo.repositoryBy(Network.class).findFirst(stream.readString());
-                    ServerType type = mongo.repositoryBy(ServerType.class).findFirst(stream.readString());
-                    List<ServerMetadata> metadata = new ArrayList<>();
-                    int size = stream.readVarInt32();
+                    Network network = mongo.repositoryBy(Network.class).findFirst(create.network());
+                    ServerType type = mongo.repositoryBy(ServerType.class).findFirst(create.type());
 
-                    for (int i = 0; i < size; i++) {
-                        metadata.add(new ServerMetadata(stream.readString(), stream.readString()));
-                    }
-
-                    Deployer.deployServer(network, type, metadata);
+                    Deployer.deployServer(network, type, new ArrayList<>(create.metadata()));
                 }));
 
-        redis.addChannel(SimpleRedisChannel.create("server-kill", redis)
+        listen(SimpleRedisChannel.create("server-kill", redis)
                 .addCallback((message) -> {
                     if (message.type() != MessageType.BINARY) {
                         return;
@@ -115,24 +118,24 @@ public class MineCloudDaemon {
                     }
                 }));
 
-        redis.addChannel(SimpleRedisChannel.create("bungee-create", redis)
+        listen(SimpleRedisChannel.create("bungee-create", redis)
                 .addCallback((message) -> {
-                    if (message.type() != MessageType.BINARY) {
+                    if (message.type() != MessageType.BINARY && message.type() != MessageType.SCHEMA) {
                         return;
                     }
 
-                    MessageInputStream stream = message.contents();
+                    BungeeCreateMessage create = redis.codec().decode(BungeeCreateMessage.SCHEMA, message);
 
-                    if (!stream.readString().equalsIgnoreCase(node))
+                    if (!create.node().equalsIgnoreCase(node))
                         return;
 
-                    Network network = mongo.repositoryBy(Network.class).findFirst(stream.readString());
-                    BungeeType type = mongo.repositoryBy(BungeeType.class).findFirst(stream.readString());
+                    Network network = mongo.repositoryBy(Network.class).findFirst(create.network());
+                    BungeeType type = mongo.repositoryBy(BungeeType.class).findFirst(create.type());
 
                     Deployer.deployBungee(network, type);
                 }));
 
-        redis.addChannel(SimpleRedisChannel.create("bungee-kill", redis)
+        listen(SimpleRedisChannel.create("bungee-kill", redis)
                 .addCallback((message) -> {
                     if (message.type() != MessageType.BINARY) {
                         return;
@@ -162,6 +165,14 @@ public class MineCloudDaemon {
                     }
                 }));
 
+        redis.commands().consume(node, (command) -> {
+            ChannelCallback callback = commands.get(command.name());
+
+            if (callback != null) {
+                callback.call(command.payload());
+            }
+        });
+
         redis.addChannel(SimpleRedisChannel.create("server-start-notif", redis)
                 .addCallback((message) -> {
                     if (message.type() != MessageType.BINARY)
@@ -199,6 +210,7 @@ public class MineCloudDaemon {
         new StatisticsWatcher().start();
 
         while (!Thread.currentThread().isInterrupted()) {
+            announce();
             try {
                 dockerClient.listContainers(DockerClient.ListContainersParam.allContainers()).stream()
                         .filter((container) -> !container.status().toLowerCase().contains("up") &&
@@ -271,6 +283,18 @@ public class MineCloudDaemon {
         }
     }
 
+    /**
+     * Tells controllers this node listens on its own channels. A failure only delays that,
+     * it must not end the main loop.
+     */
+    private void announce() {
+        try {
+            redis.nodeChannels().announce(node);
+        } catch (RuntimeException ex) {
+            MineCloud.logger().log(Level.WARNING, "Unable to announce node channels", ex);
+        }
+    }
+
     public Node node() {
         return ((NodeRepository) mongo.repositoryBy(Node.class)).nodeBy(node);
     }
@@ -283,6 +307,19 @@ public class MineCloudDaemon {
         return instance;
     }
 
+    /**
+     * Listens for a command on the command bus, this node's own channel and the shared
+     * channel older controllers still broadcast on
+     */
+    private void listen(SimpleRedisChannel channel) {
+        String command = channel.channel();
+
+        commands.put(command, channel::handle);
+        redis.addChannel(SimpleRedisChannel.create(NodeChannels.channelOf(node, command), redis)
+                .addCallback(channel::handle));
+        redis.addChannel(channel);
+    }
+
     public static void main(String[] args) throws Exception {
         Properties properties = new Properties();
         File configFolder = new File("/etc/minecloud/");